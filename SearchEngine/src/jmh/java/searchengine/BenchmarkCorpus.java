@@ -0,0 +1,51 @@
+package searchengine;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Saved HTML pages, bundled with the benchmarks (directory 'corpus' in src/jmh/resources).
+ */
+public final class BenchmarkCorpus {
+
+    public static final String[] PAGES = {"news.html", "catalog.html", "blog.html"};
+
+    private BenchmarkCorpus() {
+    }
+
+
+    public static String loadHtml(String pageName) {
+        try (InputStream inputStream = BenchmarkCorpus.class.getResourceAsStream("/corpus/" + pageName)) {
+            if (inputStream == null) {
+                throw new IllegalStateException("Page is not found in the corpus: " + pageName);
+            }
+            return new String(inputStream.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+
+    public static List<Document> loadDocuments() {
+        List<Document> documents = new ArrayList<>();
+        for (String pageName : PAGES) {
+            documents.add(Jsoup.parse(loadHtml(pageName), "https://example.ru/"));
+        }
+        return documents;
+    }
+
+
+    public static List<String> loadTexts() {
+        List<String> texts = new ArrayList<>();
+        loadDocuments().forEach(document -> texts.add(document.body().text()));
+        return texts;
+    }
+
+}
@@ -0,0 +1,141 @@
+package searchengine.repositories;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.MySQLContainer;
+import searchengine.services.invertedindex.PositionsCodec;
+
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Insert rate of rows of table 'index' in rows per second: multi-row statements of {@link IndexBatchRepositoryImpl}
+ * against one INSERT per row, which Hibernate sends for entities with IDENTITY keys (the former
+ * {@code indexRepository.saveAll(indexEntities)} in one transaction).
+ * MySQL is started in Docker by Testcontainers, so the benchmark needs a running Docker.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class IndexSaveBenchmark {
+
+    private static final int SITE_ID = 1;
+    private static final String INSERT_ROW_SQL =
+            "INSERT INTO `index`(site_id, page_id, lemma_id, `rank`, positions) VALUES (?, ?, ?, ?, ?)";
+
+    /**
+     * Number of lemmas on a page, that is of rows saved at once.
+     */
+    @Param({"100", "1000"})
+    private int rowsPerPage;
+
+    /**
+     * Param 'index-batch-size' of settings-file.
+     */
+    @Param({"1000"})
+    private int rowsPerStatement;
+
+    private MySQLContainer<?> mysql;
+    private SingleConnectionDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate transactionTemplate;
+    private IndexBatchRepositoryImpl indexBatchRepository;
+    private int[] lemmaIds;
+    private int[] ranks;
+    private byte[][] positions;
+    private int pageId;
+
+    /**
+     * Counter of saved rows, which JMH reports as rows per second.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class SavedRows {
+        public long rows;
+    }
+
+    @Setup(Level.Trial)
+    public void setup() {
+        mysql = new MySQLContainer<>("mysql:8.0");
+        mysql.start();
+        dataSource = new SingleConnectionDataSource(mysql.getJdbcUrl() + "?rewriteBatchedStatements=true",
+                mysql.getUsername(), mysql.getPassword(), true);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        indexBatchRepository = new IndexBatchRepositoryImpl(jdbcTemplate);
+        // таблица в том виде, в котором ее создают миграции Liquibase
+        jdbcTemplate.execute("""
+                CREATE TABLE `index` (
+                    id INT NOT NULL AUTO_INCREMENT,
+                    site_id INT NOT NULL,
+                    page_id INT NOT NULL,
+                    lemma_id INT NOT NULL,
+                    `rank` INT NOT NULL,
+                    positions MEDIUMBLOB,
+                    PRIMARY KEY (id, site_id),
+                    UNIQUE KEY Idx__index__page_id__lemma_id__site_id (page_id, lemma_id, site_id)
+                ) PARTITION BY LIST (site_id) (PARTITION p0 VALUES IN (0), PARTITION p1 VALUES IN (1))""");
+
+        Random random = new Random(42);
+        lemmaIds = random.ints(1, 1_000_000).distinct().limit(rowsPerPage).toArray();
+        ranks = new int[rowsPerPage];
+        positions = new byte[rowsPerPage][];
+        for (int i = 0; i < rowsPerPage; i++) {
+            int[] lemmaPositions = random.ints(0, 2000).distinct().limit(1 + random.nextInt(5)).sorted().toArray();
+            int[] offsets = new int[lemmaPositions.length];
+            for (int j = 0; j < offsets.length; j++) {
+                offsets[j] = lemmaPositions[j] * 8;
+            }
+            ranks[i] = lemmaPositions.length;
+            positions[i] = PositionsCodec.encode(lemmaPositions, offsets, lemmaPositions.length);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        dataSource.destroy();
+        mysql.stop();
+    }
+
+
+    @Benchmark
+    public void saveAllMultiRow(SavedRows savedRows) {
+        indexBatchRepository.saveAll(SITE_ID, ++pageId, lemmaIds, ranks, positions, rowsPerStatement);
+        savedRows.rows += rowsPerPage;
+    }
+
+
+    /**
+     * Rows of the page are inserted one by one in a transaction with reading of the generated keys.
+     */
+    @Benchmark
+    public void saveAllRowByRow(SavedRows savedRows) {
+        int page = ++pageId;
+        transactionTemplate.executeWithoutResult(status -> {
+            for (int i = 0; i < rowsPerPage; i++) {
+                int idx = i;
+                jdbcTemplate.update(connection -> {
+                    PreparedStatement statement = connection.prepareStatement(
+                            INSERT_ROW_SQL, Statement.RETURN_GENERATED_KEYS);
+                    statement.setInt(1, SITE_ID);
+                    statement.setInt(2, page);
+                    statement.setInt(3, lemmaIds[idx]);
+                    statement.setInt(4, ranks[idx]);
+                    statement.setBytes(5, positions[idx]);
+                    return statement;
+                }, new GeneratedKeyHolder());
+            }
+        });
+        savedRows.rows += rowsPerPage;
+    }
+
+}
@@ -0,0 +1,56 @@
+package searchengine.services.indexing;
+
+import org.jsoup.nodes.Document;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import searchengine.BenchmarkCorpus;
+import searchengine.config.IndexingSettings;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class NormalizePathBenchmark {
+
+    private static final String SITE_URL = "https://example.ru";
+
+    private PageIndexServiceImpl pageIndexService;
+    private IndexingSettings indexingSettings;
+    private List<String> links;
+
+    @Setup
+    public void setup() {
+        // normalizePath() does not use services of the DB and morphology
+        pageIndexService = new PageIndexServiceImpl(null, null, null, null, null, null, null);
+        indexingSettings = new IndexingSettings();
+        indexingSettings.setExcludeUrlParameters(true);
+        indexingSettings.setPathMaxLength(767);
+
+        links = new ArrayList<>();
+        for (Document document : BenchmarkCorpus.loadDocuments()) {
+            document.select("a[href]").forEach(link -> links.add(link.attr("abs:href")));
+        }
+        links.add(SITE_URL + "/news/2024/09/library?utm_source=main&page=2#comments");
+        links.add(SITE_URL + "/Catalog/Folding-20/");
+        links.add(SITE_URL + "/files/price-list.pdf");
+    }
+
+
+    @Benchmark
+    public void normalizePath(Blackhole blackhole) {
+        for (String link : links) {
+            try {
+                blackhole.consume(pageIndexService.normalizePath(link, SITE_URL, indexingSettings));
+            } catch (RuntimeException e) {
+                blackhole.consume(e);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,56 @@
+package searchengine.services.invertedindex;
+
+import java.util.Random;
+
+/**
+ * Creates posting lists for benchmarks of the search, since constructor of {@link Postings} is package-private.
+ */
+public final class BenchmarkPostings {
+
+    private BenchmarkPostings() {
+    }
+
+
+    /**
+     * @return posting list of 'size' random page IDs from range [0, pagesCount) with random ranks.
+     */
+    public static Postings random(int size, int pagesCount, Random random) {
+        int[] pageIds = randomPageIds(size, pagesCount, random);
+        return new Postings(pageIds, randomRanks(pageIds.length, random), new byte[pageIds.length][], pageIds.length);
+    }
+
+
+    /**
+     * @return posting list as {@link #random(int, int, Random)}, but with 'occurrencesCount' random positions
+     * of the lemma on every page from range [0, pageLength).
+     */
+    public static Postings randomWithPositions(int size, int pagesCount, int occurrencesCount, int pageLength,
+                                               Random random) {
+        int[] pageIds = randomPageIds(size, pagesCount, random);
+        byte[][] positions = new byte[pageIds.length][];
+        for (int i = 0; i < positions.length; i++) {
+            int[] pagePositions = random.ints(0, pageLength).distinct().limit(occurrencesCount).sorted().toArray();
+            int[] offsets = new int[pagePositions.length];
+            for (int j = 0; j < offsets.length; j++) {
+                offsets[j] = pagePositions[j] * 8;
+            }
+            positions[i] = PositionsCodec.encode(pagePositions, offsets, pagePositions.length);
+        }
+        return new Postings(pageIds, randomRanks(pageIds.length, random), positions, pageIds.length);
+    }
+
+
+    private static int[] randomPageIds(int size, int pagesCount, Random random) {
+        return random.ints(0, pagesCount).distinct().limit(size).sorted().toArray();
+    }
+
+
+    private static float[] randomRanks(int size, Random random) {
+        float[] ranks = new float[size];
+        for (int i = 0; i < ranks.length; i++) {
+            ranks[i] = 1 + random.nextInt(20);
+        }
+        return ranks;
+    }
+
+}
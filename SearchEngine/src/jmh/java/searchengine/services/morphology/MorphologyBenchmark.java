@@ -0,0 +1,44 @@
+package searchengine.services.morphology;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import searchengine.BenchmarkCorpus;
+import searchengine.config.IndexingSettings;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MorphologyBenchmark {
+
+    /**
+     * Size of the cache of word forms. Size 1 makes almost every word a cache miss.
+     */
+    @Param({"1", "200000"})
+    private int morphologyCacheSize;
+
+    private MorphologyServiceImpl morphologyService;
+    private List<String> texts;
+
+    @Setup
+    public void setup() {
+        IndexingSettings indexingSettings = new IndexingSettings();
+        indexingSettings.setMorphologyCacheSize(morphologyCacheSize);
+        morphologyService = new MorphologyServiceImpl(indexingSettings);
+        texts = BenchmarkCorpus.loadTexts();
+    }
+
+
+    @Benchmark
+    public void getMapOfLemmasMentions(Blackhole blackhole) {
+        for (String text : texts) {
+            blackhole.consume(morphologyService.getMapOfLemmasMentions(text));
+        }
+    }
+
+}
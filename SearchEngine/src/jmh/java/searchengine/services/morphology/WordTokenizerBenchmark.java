@@ -0,0 +1,55 @@
+package searchengine.services.morphology;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import searchengine.BenchmarkCorpus;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WordTokenizerBenchmark {
+
+    private List<String> texts;
+
+    @Setup
+    public void setup() {
+        texts = BenchmarkCorpus.loadTexts();
+    }
+
+
+    @Benchmark
+    public void tokenizeWithScanner(Blackhole blackhole) {
+        for (String text : texts) {
+            WordTokenizer.forEachWord(text, blackhole::consume);
+        }
+    }
+
+
+    /**
+     * Tokenization, as it was done before {@link WordTokenizer}.
+     */
+    @Benchmark
+    public void tokenizeWithRegex(Blackhole blackhole) {
+        for (String text : texts) {
+            String lowerCaseText = text.toLowerCase().replace('ё', 'е');
+            Pattern pattern = Pattern.compile("[а-я]+");
+            Matcher matcher = pattern.matcher(lowerCaseText);
+            while (matcher.find()) {
+                String word = matcher.group();
+                if (word.length() == 1 && !word.equals("я")) {
+                    continue;
+                }
+                blackhole.consume(word);
+            }
+        }
+    }
+
+}
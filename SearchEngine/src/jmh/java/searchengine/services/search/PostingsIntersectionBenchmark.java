@@ -0,0 +1,115 @@
+package searchengine.services.search;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import searchengine.config.IndexingSettings;
+import searchengine.services.invertedindex.BenchmarkPostings;
+import searchengine.services.invertedindex.Postings;
+import searchengine.services.invertedindex.SiteIndexStats;
+import searchengine.services.morphology.MorphologyServiceImpl;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PostingsIntersectionBenchmark {
+
+    private static final int PAGES_COUNT = 200_000;
+    /**
+     * Query of {@link #rankPagesPositional()}: a phrase and the third lemma, which is boosted by proximity.
+     */
+    private static final String POSITIONAL_QUERY = "\"поисковый индекс\" сайта";
+
+    /**
+     * Size of the posting list of the rarest lemma of the query.
+     */
+    @Param({"100", "10000"})
+    private int rareLemmaPostingsSize;
+
+    /**
+     * Size of the posting lists of two other lemmas of the query.
+     */
+    @Param({"50000"})
+    private int frequentLemmaPostingsSize;
+
+    private List<Postings> postingsList;
+    private SiteIndexStats siteStats;
+    private SearchQuery positionalQuery;
+    private Map<String, Postings> lemmasPostings;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        postingsList = List.of(
+                BenchmarkPostings.random(frequentLemmaPostingsSize, PAGES_COUNT, random),
+                BenchmarkPostings.random(rareLemmaPostingsSize, PAGES_COUNT, random),
+                BenchmarkPostings.random(frequentLemmaPostingsSize, PAGES_COUNT, random));
+        Postings pageLengths = BenchmarkPostings.random(PAGES_COUNT, PAGES_COUNT, random);
+        siteStats = new SiteIndexStats(PAGES_COUNT, 10L * PAGES_COUNT, pageLengths);
+
+        IndexingSettings indexingSettings = new IndexingSettings();
+        indexingSettings.setMorphologyCacheSize(200_000);
+        positionalQuery = SearchQuery.parse(POSITIONAL_QUERY, new MorphologyServiceImpl(indexingSettings));
+        lemmasPostings = new HashMap<>();
+        for (String lemma : new TreeSet<>(positionalQuery.getLemmas())) {
+            int size = lemmasPostings.size() == 1 ? rareLemmaPostingsSize : frequentLemmaPostingsSize;
+            lemmasPostings.put(lemma, BenchmarkPostings.randomWithPositions(size, PAGES_COUNT, 5, 500, random));
+        }
+    }
+
+
+    @Benchmark
+    public void intersect(Blackhole blackhole) {
+        PostingsIntersection.intersect(postingsList, (pageId, ranksSum) -> blackhole.consume(pageId));
+    }
+
+
+    /**
+     * Intersection of posting lists, calculation of relevance of found pages and their sorting.
+     */
+    @Benchmark
+    public RankedPages rankPages() {
+        PagesRanksAccumulator accumulator = new PagesRanksAccumulator();
+        PostingsIntersection.intersect(postingsList, accumulator::add);
+        return accumulator.toRankedPages();
+    }
+
+
+    /**
+     * The same as {@link #rankPages()}, but pages are scored by BM25 with lengths of pages.
+     */
+    @Benchmark
+    public RankedPages rankPagesBm25() {
+        List<Postings> lists = new ArrayList<>(postingsList);
+        PostingsIntersection.PageScorer scorer = new Bm25Scorer(1.2f, 0.75f).forSite(siteStats, lists);
+        PagesRanksAccumulator accumulator = new PagesRanksAccumulator();
+        PostingsIntersection.intersect(lists, scorer, accumulator::add);
+        return accumulator.toRankedPages();
+    }
+
+
+    /**
+     * The same as {@link #rankPagesBm25()} on posting lists with positions, but pages are checked for the phrase
+     * and scores of pages are boosted by proximity of the lemmas, as the search does.
+     */
+    @Benchmark
+    public RankedPages rankPagesPositional() {
+        List<Postings> lists = new ArrayList<>(lemmasPostings.values());
+        PostingsIntersection.PageScorer scorer = new Bm25Scorer(1.2f, 0.75f).forSite(siteStats, lists);
+        PositionalMatcher matcher = new PositionalMatcher(positionalQuery, lemmasPostings, 0.5f);
+        PagesRanksAccumulator accumulator = new PagesRanksAccumulator();
+        PostingsIntersection.intersect(lists, scorer, (pageId, score) -> {
+            float rank = matcher.score(pageId, score);
+            if (rank != PositionalMatcher.NOT_MATCHED) {
+                accumulator.add(pageId, rank);
+            }
+        });
+        return accumulator.toRankedPages();
+    }
+
+}
@@ -0,0 +1,64 @@
+package searchengine.services.search;
+
+import org.jsoup.nodes.Document;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import searchengine.BenchmarkCorpus;
+import searchengine.config.IndexingSettings;
+import searchengine.services.morphology.MorphologyService;
+import searchengine.services.morphology.MorphologyServiceImpl;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SnippetBenchmark {
+
+    /**
+     * Search queries for pages of the corpus, in the order of {@link BenchmarkCorpus#PAGES}.
+     */
+    private static final String[] QUERIES = {
+            "читальный зал библиотеки", "рама туристического велосипеда", "списки страниц поискового индекса"
+    };
+
+    private TitleAndSnippet titleAndSnippet;
+    private List<Document> documents;
+    private Set<String>[] queriesLemmas;
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setup() {
+        IndexingSettings indexingSettings = new IndexingSettings();
+        indexingSettings.setMorphologyCacheSize(200_000);
+        MorphologyService morphologyService = new MorphologyServiceImpl(indexingSettings);
+        titleAndSnippet = new TitleAndSnippet(morphologyService);
+        documents = BenchmarkCorpus.loadDocuments();
+        queriesLemmas = new Set[QUERIES.length];
+        for (int i = 0; i < QUERIES.length; i++) {
+            queriesLemmas[i] = morphologyService.getUniqueLemmasFromText(QUERIES[i]);
+        }
+    }
+
+
+    @Benchmark
+    public void getSnippetForPage(Blackhole blackhole) {
+        for (int i = 0; i < documents.size(); i++) {
+            blackhole.consume(titleAndSnippet.getSnippetForPage(documents.get(i), queriesLemmas[i]));
+        }
+    }
+
+
+    @Benchmark
+    public void getPageTitle(Blackhole blackhole) {
+        for (int i = 0; i < documents.size(); i++) {
+            blackhole.consume(titleAndSnippet.getPageTitle(documents.get(i), queriesLemmas[i]));
+        }
+    }
+
+}
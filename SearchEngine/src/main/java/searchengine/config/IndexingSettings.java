@@ -38,9 +38,117 @@ public class IndexingSettings {
     @Value("${request-timeout:500}")
     private int requestTimeout;
 
+    @Value("${request-burst:1}")
+    private int requestBurst;
+    public void setRequestBurst(int requestBurst) {
+        this.requestBurst = Math.max(requestBurst, 1);
+    }
+
+    @Value("${respect-crawl-delay:true}")
+    private boolean respectCrawlDelay;
+
+    @Value("${fetch-timeout:30}")
+    private int fetchTimeout;
+
+    @Value("${max-pages-in-progress:16}")
+    private int maxPagesInProgress;
+    public void setMaxPagesInProgress(int maxPagesInProgress) {
+        this.maxPagesInProgress = Math.max(maxPagesInProgress, 1);
+    }
+
+    @Value("${max-depth:0}")
+    private int maxDepth;
+    public void setMaxDepth(int maxDepth) {
+        this.maxDepth = Math.max(maxDepth, 0);
+    }
+
+    @Value("${max-pages:0}")
+    private int maxPages;
+    public void setMaxPages(int maxPages) {
+        this.maxPages = Math.max(maxPages, 0);
+    }
+
+    @Value("${parse-threads:0}")
+    private int parseThreads;
+
+    @Value("${db-writer-threads:2}")
+    private int dbWriterThreads;
+    public void setDbWriterThreads(int dbWriterThreads) {
+        this.dbWriterThreads = Math.max(dbWriterThreads, 1);
+    }
+
+    @Value("${use-virtual-threads:false}")
+    private boolean useVirtualThreads;
+
+    @Value("${max-concurrent-fetches:64}")
+    private int maxConcurrentFetches;
+    public void setMaxConcurrentFetches(int maxConcurrentFetches) {
+        this.maxConcurrentFetches = Math.max(maxConcurrentFetches, 1);
+    }
+
     @Value("${check-visited-pages-algorithm:1}")
     private int checkVisitedPagesAlgorithm;
 
+    @Value("${visited-pages-capacity:65536}")
+    private int visitedPagesCapacity;
+    public void setVisitedPagesCapacity(int visitedPagesCapacity) {
+        this.visitedPagesCapacity = Math.max(visitedPagesCapacity, 1);
+    }
+
+    @Value("${visited-pages-off-heap:false}")
+    private boolean visitedPagesOffHeap;
+
+    @Value("${visited-pages-bloom-filter:true}")
+    private boolean visitedPagesBloomFilter;
+
+    @Value("${checkpoint-interval:60}")
+    private int checkpointInterval;
+    public void setCheckpointInterval(int checkpointInterval) {
+        this.checkpointInterval = Math.max(checkpointInterval, 0);
+    }
+
+    @Value("${checkpoint-dir:checkpoints}")
+    private String checkpointDir;
+
+    @Value("${resume-indexing:true}")
+    private boolean resumeIndexing;
+
+    @Value("${incremental-indexing:false}")
+    private boolean incrementalIndexing;
+
+    @Value("${shadow-indexing:true}")
+    private boolean shadowIndexing;
+
+    @Value("${aggregate-lemma-frequencies:true}")
+    private boolean aggregateLemmaFrequencies;
+
+    @Value("${lemma-flush-threshold:10000}")
+    private int lemmaFlushThreshold;
+    public void setLemmaFlushThreshold(int lemmaFlushThreshold) {
+        this.lemmaFlushThreshold = Math.max(lemmaFlushThreshold, 1);
+    }
+
+    @Value("${lemma-flush-interval:30}")
+    private int lemmaFlushInterval;
+    public void setLemmaFlushInterval(int lemmaFlushInterval) {
+        this.lemmaFlushInterval = Math.max(lemmaFlushInterval, 1);
+    }
+
+    @Value("${index-batch-size:1000}")
+    private int indexBatchSize;
+    public void setIndexBatchSize(int indexBatchSize) {
+        this.indexBatchSize = Math.max(indexBatchSize, 1);
+    }
+
+    @Value("${delete-batch-size:200}")
+    private int deleteBatchSize;
+    public void setDeleteBatchSize(int deleteBatchSize) {
+        this.deleteBatchSize = Math.max(deleteBatchSize, 1);
+    }
+
+    @Value("${morphology-cache-size:200000}")
+    private int morphologyCacheSize;
+
     private Set<Site> sites;
     public void setSites(Set<Site> sites) {
         this.sites = new HashSet<>();
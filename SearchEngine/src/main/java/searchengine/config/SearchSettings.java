@@ -0,0 +1,50 @@
+package searchengine.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "search-settings")
+public class SearchSettings {
+
+    @Value("${cache-max-size:1000}")
+    private int cacheMaxSize;
+
+    @Value("${cache-ttl:600}")
+    private int cacheTtl;
+
+    @Value("${proximity-weight:1.0}")
+    private float proximityWeight;
+
+    public void setProximityWeight(float proximityWeight) {
+        this.proximityWeight = Math.max(proximityWeight, 0);
+    }
+
+    @Value("${ranking:BM25}")
+    private Ranking ranking;
+
+    @Value("${bm25-k1:1.2}")
+    private float bm25K1;
+
+    @Value("${bm25-b:0.75}")
+    private float bm25B;
+
+    public void setBm25K1(float bm25K1) {
+        this.bm25K1 = Math.max(bm25K1, 0);
+    }
+
+    public void setBm25B(float bm25B) {
+        this.bm25B = Math.min(Math.max(bm25B, 0), 1);
+    }
+
+
+    public enum Ranking {
+        BM25, RANK_SUM
+    }
+
+}
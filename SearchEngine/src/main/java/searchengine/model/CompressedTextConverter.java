@@ -0,0 +1,85 @@
+package searchengine.model;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Stores text in a binary column compressed with Deflate in the format of MySQL function COMPRESS():
+ * length of the UTF-8 bytes of the text as a four-byte integer, low byte first, followed by a zlib stream.
+ * So the column can be read with UNCOMPRESS() in SQL, and rows compressed by the DB can be read by the application.
+ * An empty text is stored as an empty value.
+ */
+@Converter
+public class CompressedTextConverter implements AttributeConverter<String, byte[]> {
+
+    private static final int LENGTH_BYTES = 4;
+    private static final int BUFFER_SIZE = 8192;
+
+    @Override
+    public byte[] convertToDatabaseColumn(String text) {
+        if (text == null) {
+            return null;
+        }
+        if (text.isEmpty()) {
+            return new byte[0];
+        }
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 4 + LENGTH_BYTES);
+        out.writeBytes(ByteBuffer.allocate(LENGTH_BYTES).order(ByteOrder.LITTLE_ENDIAN).putInt(bytes.length).array());
+        // наименьшая степень сжатия, т.к. страницы сжимаются при индексации;
+        // HTML-код при этом всё равно сжимается в несколько раз
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(bytes);
+            deflater.finish();
+            byte[] buffer = new byte[BUFFER_SIZE];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+        } finally {
+            deflater.end();
+        }
+        return out.toByteArray();
+    }
+
+    @Override
+    public String convertToEntityAttribute(byte[] data) {
+        if (data == null) {
+            return null;
+        }
+        if (data.length <= LENGTH_BYTES) {
+            return "";
+        }
+        int length = ByteBuffer.wrap(data, 0, LENGTH_BYTES).order(ByteOrder.LITTLE_ENDIAN).getInt() & 0x3FFFFFFF;
+        byte[] bytes = new byte[length];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data, LENGTH_BYTES, data.length - LENGTH_BYTES);
+            int offset = 0;
+            while (offset < length && !inflater.finished()) {
+                int count = inflater.inflate(bytes, offset, length - offset);
+                if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                offset += count;
+            }
+            if (offset != length) {
+                throw new IllegalArgumentException("Compressed text is truncated: " + offset + " of " + length + " bytes");
+            }
+        } catch (DataFormatException e) {
+            throw new IllegalArgumentException("Compressed text is damaged", e);
+        } finally {
+            inflater.end();
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+}
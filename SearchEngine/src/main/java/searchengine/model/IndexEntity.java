@@ -8,8 +8,8 @@ import lombok.Setter;
 @Entity
 @Table( name = "`index`",
         indexes = @jakarta.persistence.Index(
-            name = "Idx__index__page_id__lemma",
-            columnList = "page_id, lemma_id",
+            name = "Idx__index__page_id__lemma_id__site_id",
+            columnList = "page_id, lemma_id, site_id",
             unique = true)
 )
 @Getter
@@ -21,20 +21,33 @@ public class IndexEntity {
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Integer id;
 
+    // Таблица секционирована по site_id, поэтому внешних ключей нет, а строки удаляются приложением
     @ManyToOne(fetch = FetchType.LAZY)
-    @JoinColumn(name = "page_id", nullable = false, foreignKey = @ForeignKey(name="FK_index_page"))
+    @JoinColumn(name = "page_id", nullable = false, foreignKey = @ForeignKey(ConstraintMode.NO_CONSTRAINT))
     private PageEntity pageEntity;
 
     @ManyToOne(fetch = FetchType.LAZY)
-    @JoinColumn(name = "lemma_id", nullable = false, foreignKey = @ForeignKey(name="FK_index_lemma"))
+    @JoinColumn(name = "lemma_id", nullable = false, foreignKey = @ForeignKey(ConstraintMode.NO_CONSTRAINT))
     private LemmaEntity lemmaEntity;
 
+    // Столбец секционирования; совпадает с site_id страницы и леммы
+    @Column(name = "site_id", nullable = false)
+    private Integer siteId;
+
     @Column(name = "`rank`", columnDefinition = "float", nullable = false)
     private Integer rank;
 
+    /**
+     * Occurrences of the lemma in the plain text of the page, encoded with PositionsCodec.
+     * Null, if the lemma occurs only in headers and footers, or the page was indexed before positions were saved.
+     */
+    @Column(columnDefinition = "mediumblob")
+    private byte[] positions;
+
     public IndexEntity(PageEntity pageEntity, LemmaEntity lemmaEntity, Integer rank) {
         this.pageEntity = pageEntity;
         this.lemmaEntity = lemmaEntity;
+        this.siteId = pageEntity.getSiteEntity().getId();
         this.rank = rank;
     }
 }
@@ -24,8 +24,9 @@ public class LemmaEntity {
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Integer id;
 
+    // Таблица секционирована по site_id, поэтому первичный ключ в БД - (id, site_id), а внешнего ключа нет
     @ManyToOne(fetch = FetchType.LAZY)
-    @JoinColumn(name = "site_id", nullable = false, foreignKey = @ForeignKey(name="FK_lemma_site"))
+    @JoinColumn(name = "site_id", nullable = false, foreignKey = @ForeignKey(ConstraintMode.NO_CONSTRAINT))
     private SiteEntity siteEntity;
 
     @Column(columnDefinition = "varchar(255)", nullable = false)
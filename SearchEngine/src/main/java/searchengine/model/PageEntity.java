@@ -31,8 +31,10 @@ public class PageEntity implements Comparable<PageEntity> {
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Integer id;
 
+    // Таблица секционирована по site_id, поэтому первичный ключ в БД - (id, site_id), а внешнего ключа нет.
+    // Значения id уникальны и без site_id, т.к. генерируются автоинкрементом
     @ManyToOne(fetch = FetchType.LAZY)
-    @JoinColumn(name = "site_id", nullable = false, foreignKey = @ForeignKey(name="FK_page_site"))
+    @JoinColumn(name = "site_id", nullable = false, foreignKey = @ForeignKey(ConstraintMode.NO_CONSTRAINT))
     private SiteEntity siteEntity;
 
     @Column(columnDefinition = "varchar(" + MAX_PATH_LENGTH + ")", nullable = false)
@@ -41,9 +43,48 @@ public class PageEntity implements Comparable<PageEntity> {
     @Column(nullable = false)
     private Integer code;
 
-    @Column(columnDefinition = "mediumtext", nullable = false)
+    /**
+     * HTML code of the page, stored compressed (see {@link CompressedTextConverter}).
+     * Loaded on the first access (requires bytecode enhancement of entities, see pom.xml), so it should be read
+     * with PageCRUDService.getContentById outside of a transaction.
+     */
+    @Basic(fetch = FetchType.LAZY)
+    @Convert(converter = CompressedTextConverter.class)
+    @Column(columnDefinition = "mediumblob", nullable = false)
     private String content;
 
+    /**
+     * Title of the page, extracted at indexing. Null for pages indexed before titles were saved.
+     */
+    @Column(length = 512)
+    private String title;
+
+    /**
+     * Plain text of the page without headers and footers, extracted at indexing and stored compressed.
+     * Null for pages indexed before texts were saved.
+     */
+    @Basic(fetch = FetchType.LAZY)
+    @Convert(converter = CompressedTextConverter.class)
+    @Column(name = "plain_text", columnDefinition = "mediumblob")
+    private String plainText;
+
+    /**
+     * Hash of the page text, by which changes of the page are detected during incremental indexing.
+     */
+    @Column(name = "text_hash")
+    private Long textHash;
+
+    /**
+     * Value of response header 'ETag' or null.
+     */
+    private String etag;
+
+    /**
+     * Value of response header 'Last-Modified' or null.
+     */
+    @Column(name = "last_modified", length = 64)
+    private String lastModified;
+
 //    @OneToMany(mappedBy = "pageEntity", cascade = CascadeType.REMOVE)
     @OneToMany(mappedBy = "pageEntity")
     private List<IndexEntity> indexEntities = new ArrayList<>();
@@ -12,7 +12,11 @@ import java.util.HashSet;
 import java.util.Set;
 
 @Entity
-@Table(name = "site")
+@Table( name = "site",
+        indexes = @jakarta.persistence.Index(
+            name = "Idx__site__url",
+            columnList = "url")
+)
 @Getter
 @Setter
 @NoArgsConstructor
@@ -33,9 +37,14 @@ public class SiteEntity {
     @Column(name = "last_error", columnDefinition = "text")
     private String lastError;
 
-    @Column(columnDefinition = "varchar(255)", nullable = false, unique = true)
+    @Column(columnDefinition = "varchar(255)", nullable = false)
     private String url;
 
+    // Сайт может иметь несколько поколений: активное, по которому выполняется поиск, и неактивные -
+    // строящееся при переиндексации или устаревшее, ожидающее удаления
+    @Column(nullable = false)
+    private boolean active = true;
+
     @Column(columnDefinition = "varchar(255)", nullable = false)
     private String name;
 
@@ -63,6 +72,7 @@ public class SiteEntity {
                 "statusTime=" + statusTime + System.lineSeparator() +
                 "lastError='" + lastError + '\'' + System.lineSeparator() +
                 "url='" + url + '\'' + System.lineSeparator() +
-                "name='" + name + '\'';
+                "name='" + name + '\'' + System.lineSeparator() +
+                "active=" + active;
     }
 }
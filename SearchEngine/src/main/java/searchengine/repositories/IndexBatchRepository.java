@@ -0,0 +1,17 @@
+package searchengine.repositories;
+
+public interface IndexBatchRepository {
+
+    /**
+     * Inserts rows of table 'index' for a page with multi-row statements in one transaction,
+     * so after a failure none of the rows is saved and the call may be repeated.
+     *
+     * @param siteId           ID of the site of the page.
+     * @param lemmaIds         IDs of lemmas of the page.
+     * @param ranks            ranks of the lemmas on the page, in the same order as param 'lemmaIds'.
+     * @param positions        encoded positions of the lemmas on the page or nulls, in the same order as param 'lemmaIds'.
+     * @param rowsPerStatement max number of rows in one INSERT statement.
+     */
+    void saveAll(int siteId, int pageId, int[] lemmaIds, int[] ranks, byte[][] positions, int rowsPerStatement);
+
+}
@@ -0,0 +1,32 @@
+package searchengine.repositories;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+
+@RequiredArgsConstructor
+public class IndexBatchRepositoryImpl implements IndexBatchRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    @Transactional
+    public void saveAll(int siteId, int pageId, int[] lemmaIds, int[] ranks, byte[][] positions, int rowsPerStatement) {
+        for (int from = 0; from < lemmaIds.length; from += rowsPerStatement) {
+            int rowsCount = Math.min(rowsPerStatement, lemmaIds.length - from);
+            StringBuilder sql = new StringBuilder(
+                    "INSERT INTO `index`(site_id, page_id, lemma_id, `rank`, positions) VALUES ");
+            Object[] args = new Object[rowsCount * 5];
+            for (int i = 0; i < rowsCount; i++) {
+                sql.append(i == 0 ? "(?, ?, ?, ?, ?)" : ", (?, ?, ?, ?, ?)");
+                args[i * 5] = siteId;
+                args[i * 5 + 1] = pageId;
+                args[i * 5 + 2] = lemmaIds[from + i];
+                args[i * 5 + 3] = ranks[from + i];
+                args[i * 5 + 4] = positions[from + i];
+            }
+            jdbcTemplate.update(sql.toString(), args);
+        }
+    }
+
+}
@@ -1,15 +1,63 @@
 package searchengine.repositories;
 
+import jakarta.persistence.QueryHint;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import searchengine.model.IndexEntity;
 import searchengine.model.LemmaEntity;
+import searchengine.model.SiteEntity;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 
 @Repository
-public interface IndexRepository extends JpaRepository<IndexEntity, Integer> {
+public interface IndexRepository extends JpaRepository<IndexEntity, Integer>, IndexBatchRepository {
 
     List<IndexEntity> findALLByLemmaEntity(LemmaEntity lemmaEntity);
 
+    @Query("SELECT i.lemmaEntity.lemma FROM IndexEntity i WHERE i.pageEntity.id = ?1")
+    List<String> findLemmasByPageId(int pageId);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM IndexEntity WHERE pageEntity.id = ?1")
+    int deleteByPageId(int pageId);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM IndexEntity WHERE siteId = ?1 AND pageEntity.id > ?2")
+    int deleteBySiteIdAndPageIdGreaterThan(int siteId, int pageId);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM IndexEntity WHERE siteId = ?1 AND pageEntity.id IN " +
+            "(SELECT p.id FROM PageEntity p WHERE p.siteEntity.id = ?1 AND p.path IN ?2)")
+    int deleteBySiteIdAndPagePathIn(int siteId, Collection<String> paths);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM IndexEntity WHERE pageEntity.id IN ?1")
+    int deleteByPageIdIn(Collection<Integer> pageIds);
+
+    /**
+     * Streams rows of the site without creating entities. Fetch size Integer.MIN_VALUE
+     * makes MySQL driver read the result set row by row instead of loading it to memory.
+     */
+    @QueryHints(@QueryHint(name = "org.hibernate.fetchSize", value = "-2147483648"))
+    @Query("SELECT i.lemmaEntity.lemma AS lemma, i.pageEntity.id AS pageId, i.rank AS rank, " +
+            "i.positions AS positions FROM IndexEntity i WHERE i.siteId = ?1 ORDER BY i.pageEntity.id")
+    Stream<IndexRow> streamAllBySiteId(int siteId);
+
+    interface IndexRow {
+        String getLemma();
+        Integer getPageId();
+        Integer getRank();
+        byte[] getPositions();
+    }
+
 }
@@ -0,0 +1,29 @@
+package searchengine.repositories;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.SortedMap;
+
+public interface LemmaBatchRepository {
+
+    /**
+     * Inserts lemmas of the site or increases frequencies of existing ones with multi-row statements.
+     * Rows are written in the order of the map keys, so concurrent calls lock rows of table 'lemma'
+     * in the same order. All statements are executed in one transaction, so a failed call changes nothing
+     * and may be repeated without increasing frequencies twice.
+     *
+     * @param lemmasFrequencies map where key is lemma and value is increment of the lemma frequency.
+     */
+    void saveOrUpdateAll(int siteId, SortedMap<String, Integer> lemmasFrequencies);
+
+    /**
+     * @return map where key is lemma and value is ID of the lemma. Absent lemmas are not included.
+     */
+    Map<String, Integer> findIdsBySiteIdAndLemmas(int siteId, Collection<String> lemmas);
+
+    /**
+     * @return map where key is lemma and value is ID of the lemma, for all lemmas of the site.
+     */
+    Map<String, Integer> findAllIdsBySiteId(int siteId);
+
+}
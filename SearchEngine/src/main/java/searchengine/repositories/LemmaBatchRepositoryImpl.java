@@ -0,0 +1,77 @@
+package searchengine.repositories;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.*;
+
+@RequiredArgsConstructor
+public class LemmaBatchRepositoryImpl implements LemmaBatchRepository {
+
+    /**
+     * Max number of rows in one INSERT statement
+     */
+    static final int ROWS_PER_STATEMENT = 500;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    @Transactional
+    public void saveOrUpdateAll(int siteId, SortedMap<String, Integer> lemmasFrequencies) {
+        List<Object> args = new ArrayList<>(ROWS_PER_STATEMENT * 3);
+        int rowsCount = 0;
+        for (Map.Entry<String, Integer> entry : lemmasFrequencies.entrySet()) {
+            args.add(siteId);
+            args.add(entry.getKey());
+            args.add(entry.getValue());
+            rowsCount++;
+            if (rowsCount == ROWS_PER_STATEMENT) {
+                executeUpsert(rowsCount, args);
+                args.clear();
+                rowsCount = 0;
+            }
+        }
+        if (rowsCount > 0) {
+            executeUpsert(rowsCount, args);
+        }
+    }
+
+    @Override
+    public Map<String, Integer> findIdsBySiteIdAndLemmas(int siteId, Collection<String> lemmas) {
+        Map<String, Integer> lemmasIds = new HashMap<>(lemmas.size() * 2);
+        List<Object> args = new ArrayList<>(ROWS_PER_STATEMENT + 1);
+        Iterator<String> iterator = lemmas.iterator();
+        while (iterator.hasNext()) {
+            args.clear();
+            args.add(siteId);
+            StringBuilder sql = new StringBuilder("SELECT id, lemma FROM lemma WHERE site_id = ? AND lemma IN (");
+            for (int i = 0; i < ROWS_PER_STATEMENT && iterator.hasNext(); i++) {
+                sql.append(i == 0 ? "?" : ", ?");
+                args.add(iterator.next());
+            }
+            sql.append(')');
+            jdbcTemplate.query(sql.toString(),
+                    rs -> { lemmasIds.put(rs.getString(2), rs.getInt(1)); }, args.toArray());
+        }
+        return lemmasIds;
+    }
+
+    @Override
+    public Map<String, Integer> findAllIdsBySiteId(int siteId) {
+        Map<String, Integer> lemmasIds = new HashMap<>();
+        jdbcTemplate.query("SELECT id, lemma FROM lemma WHERE site_id = ?",
+                rs -> { lemmasIds.put(rs.getString(2), rs.getInt(1)); }, siteId);
+        return lemmasIds;
+    }
+
+    private void executeUpsert(int rowsCount, List<Object> args) {
+        StringBuilder sql = new StringBuilder("INSERT INTO lemma(site_id, lemma, frequency) VALUES ");
+        for (int i = 0; i < rowsCount; i++) {
+            sql.append(i == 0 ? "(?, ?, ?)" : ", (?, ?, ?)");
+        }
+        sql.append(" ON DUPLICATE KEY UPDATE frequency = frequency + VALUES(frequency)");
+        jdbcTemplate.update(sql.toString(), args.toArray());
+    }
+
+}
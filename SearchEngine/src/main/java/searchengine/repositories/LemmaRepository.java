@@ -9,7 +9,7 @@ import searchengine.model.LemmaEntity;
 import searchengine.model.SiteEntity;
 
 @Repository
-public interface LemmaRepository extends JpaRepository<LemmaEntity, Integer> {
+public interface LemmaRepository extends JpaRepository<LemmaEntity, Integer>, LemmaBatchRepository {
 
     LemmaEntity findBySiteEntityAndLemma(SiteEntity siteEntity, String lemma);
 
@@ -17,14 +17,19 @@ public interface LemmaRepository extends JpaRepository<LemmaEntity, Integer> {
 
     @Modifying
     @Transactional
-    @Query( nativeQuery = true,
-            value = "INSERT INTO lemma(site_id, lemma, frequency) VALUES (?1, ?2, 1) " +
-                    "ON DUPLICATE KEY UPDATE frequency = frequency + 1")
-    void saveOrUpdate(Integer siteId, String lemma);
+    @Query("UPDATE LemmaEntity SET frequency = frequency - 1 WHERE siteEntity = ?1 and lemma = ?2")
+    void decreaseFrequencyByOne(SiteEntity siteEntity, String lemma);
 
     @Modifying
     @Transactional
-    @Query("UPDATE LemmaEntity SET frequency = frequency - 1 WHERE siteEntity = ?1 and lemma = ?2")
-    void decreaseFrequencyByOne(SiteEntity siteEntity, String lemma);
+    @Query(value = "UPDATE lemma l SET l.frequency = " +
+            "(SELECT COUNT(*) FROM `index` i WHERE i.site_id = ?1 AND i.lemma_id = l.id) WHERE l.site_id = ?1",
+            nativeQuery = true)
+    void recalculateFrequenciesBySiteId(int siteId);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM LemmaEntity WHERE siteEntity.id = ?1 AND frequency = 0")
+    int deleteUnusedBySiteId(int siteId);
 
 }
@@ -1,11 +1,18 @@
 package searchengine.repositories;
 
+import jakarta.persistence.QueryHint;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import searchengine.model.PageEntity;
 import searchengine.model.SiteEntity;
 
+import java.util.Collection;
+import java.util.stream.Stream;
+
 @Repository
 public interface PageRepository extends JpaRepository<PageEntity, Integer> {
 
@@ -16,4 +23,73 @@ public interface PageRepository extends JpaRepository<PageEntity, Integer> {
     @Query("SELECT id FROM PageEntity WHERE siteEntity = ?1 AND path = ?2")
     Integer findIdBySiteEntityAndPath(SiteEntity siteEntity, String path);
 
+    @Query("SELECT p.id AS id, p.textHash AS textHash, p.etag AS etag, p.lastModified AS lastModified " +
+            "FROM PageEntity p WHERE p.siteEntity = ?1 AND p.path = ?2")
+    PageVersionRow findVersionBySiteEntityAndPath(SiteEntity siteEntity, String path);
+
+    @Query("SELECT p.path AS path, p.siteEntity.id AS siteId, p.title AS title, p.plainText AS plainText " +
+            "FROM PageEntity p WHERE p.id = ?1")
+    PageTextRow findTextById(int id);
+
+    @Query("SELECT content FROM PageEntity WHERE id = ?1")
+    String findContentById(int id);
+
+    @Query("SELECT MAX(id) FROM PageEntity WHERE siteEntity = ?1")
+    Integer findMaxIdBySiteEntity(SiteEntity siteEntity);
+
+    /**
+     * Streams paths of the site. Fetch size Integer.MIN_VALUE makes MySQL driver read the result set row by row.
+     */
+    @QueryHints(@QueryHint(name = "org.hibernate.fetchSize", value = "-2147483648"))
+    @Query("SELECT path FROM PageEntity WHERE siteEntity = ?1")
+    Stream<String> streamPathsBySiteEntity(SiteEntity siteEntity);
+
+    @QueryHints(@QueryHint(name = "org.hibernate.fetchSize", value = "-2147483648"))
+    @Query("SELECT id FROM PageEntity WHERE siteEntity = ?1")
+    Stream<Integer> streamIdsBySiteEntity(SiteEntity siteEntity);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE PageEntity SET code = ?2, content = ?3, title = ?4, plainText = ?5, " +
+            "textHash = ?6, etag = ?7, lastModified = ?8 WHERE id = ?1")
+    int updateContentById(int id, int code, String content, String title, String plainText,
+                          long textHash, String etag, String lastModified);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE PageEntity SET textHash = ?2, etag = ?3, lastModified = ?4 WHERE id = ?1")
+    int updateVersionById(int id, long textHash, String etag, String lastModified);
+
+    /**
+     * Rows of table 'index' of the deleted pages must be deleted before, as the table has no foreign keys.
+     */
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM PageEntity WHERE siteEntity = ?1 AND id > ?2")
+    int deleteBySiteEntityAndIdGreaterThan(SiteEntity siteEntity, int id);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM PageEntity WHERE siteEntity = ?1 AND path IN ?2")
+    int deleteBySiteEntityAndPathIn(SiteEntity siteEntity, Collection<String> paths);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM PageEntity WHERE id IN ?1")
+    int deleteByIdIn(Collection<Integer> ids);
+
+    interface PageTextRow {
+        String getPath();
+        Integer getSiteId();
+        String getTitle();
+        String getPlainText();
+    }
+
+    interface PageVersionRow {
+        Integer getId();
+        Long getTextHash();
+        String getEtag();
+        String getLastModified();
+    }
+
 }
@@ -0,0 +1,47 @@
+package searchengine.repositories;
+
+public interface SiteBatchRepository {
+
+    int countPagesBySiteId(int siteId);
+
+    /**
+     * @return max ID among the first 'pagesCount' pages of the site with IDs greater than 'afterPageId',
+     * or 0, if the site has no such pages.
+     */
+    int findPagesChunkEnd(int siteId, int afterPageId, int pagesCount);
+
+    /**
+     * Deletes rows of table 'index' of the pages of the site with IDs in range ('afterPageId', 'lastPageId'].
+     */
+    int deleteIndexesByPageIdRange(int siteId, int afterPageId, int lastPageId);
+
+    /**
+     * Deletes pages of the site with IDs in range ('afterPageId', 'lastPageId'].
+     */
+    int deletePagesByIdRange(int siteId, int afterPageId, int lastPageId);
+
+    /**
+     * Deletes not more than 'rowsCount' lemmas of the site. Rows of table 'index' of the lemmas must be deleted before.
+     */
+    int deleteLemmasBySiteId(int siteId, int rowsCount);
+
+    int deleteSiteRowById(int siteId);
+
+    /**
+     * @return true, if tables 'page', 'lemma' and 'index' are partitioned by site (MySQL only).
+     */
+    boolean isPartitionedBySite();
+
+    boolean hasSitePartitions(int siteId);
+
+    /**
+     * Adds partitions of the site to tables 'page', 'lemma' and 'index'.
+     */
+    void addSitePartitions(int siteId);
+
+    /**
+     * Drops partitions of the site with all their rows from tables 'index', 'page' and 'lemma'.
+     */
+    void dropSitePartitions(int siteId);
+
+}
@@ -0,0 +1,100 @@
+package searchengine.repositories;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+
+@RequiredArgsConstructor
+public class SiteBatchRepositoryImpl implements SiteBatchRepository {
+
+    // порядок важен при удалении секций: строки 'index' ссылаются на строки 'page' и 'lemma'
+    private static final List<String> PARTITIONED_TABLES = List.of("index", "page", "lemma");
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public int countPagesBySiteId(int siteId) {
+        Integer count = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM page WHERE site_id = ?", Integer.class, siteId);
+        return count == null ? 0 : count;
+    }
+
+    @Override
+    public int findPagesChunkEnd(int siteId, int afterPageId, int pagesCount) {
+        Integer lastPageId = jdbcTemplate.queryForObject(
+                "SELECT MAX(id) FROM (SELECT id FROM page WHERE site_id = ? AND id > ? ORDER BY id LIMIT ?) chunk",
+                Integer.class, siteId, afterPageId, pagesCount);
+        return lastPageId == null ? 0 : lastPageId;
+    }
+
+    @Override
+    public int deleteIndexesByPageIdRange(int siteId, int afterPageId, int lastPageId) {
+        return jdbcTemplate.update("DELETE FROM `index` WHERE site_id = ? AND page_id > ? AND page_id <= ?",
+                siteId, afterPageId, lastPageId);
+    }
+
+    @Override
+    public int deletePagesByIdRange(int siteId, int afterPageId, int lastPageId) {
+        return jdbcTemplate.update("DELETE FROM page WHERE site_id = ? AND id > ? AND id <= ?",
+                siteId, afterPageId, lastPageId);
+    }
+
+    @Override
+    public int deleteLemmasBySiteId(int siteId, int rowsCount) {
+        return jdbcTemplate.update("DELETE FROM lemma WHERE site_id = ? LIMIT ?", siteId, rowsCount);
+    }
+
+    @Override
+    public int deleteSiteRowById(int siteId) {
+        return jdbcTemplate.update("DELETE FROM site WHERE id = ?", siteId);
+    }
+
+    @Override
+    public boolean isPartitionedBySite() {
+        Integer count = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM information_schema.PARTITIONS " +
+                "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'page' AND PARTITION_NAME IS NOT NULL", Integer.class);
+        return count != null && count > 0;
+    }
+
+    @Override
+    public boolean hasSitePartitions(int siteId) {
+        return PARTITIONED_TABLES.stream().anyMatch(table -> hasPartition(table, siteId));
+    }
+
+    /**
+     * Partitions, which already exist, are skipped, so adding may be repeated after a failure.
+     */
+    @Override
+    public void addSitePartitions(int siteId) {
+        for (String table : PARTITIONED_TABLES.reversed()) {
+            if (!hasPartition(table, siteId)) {
+                jdbcTemplate.execute("ALTER TABLE `" + table + "` ADD PARTITION (PARTITION " +
+                        getPartitionName(siteId) + " VALUES IN (" + siteId + "))");
+            }
+        }
+    }
+
+    /**
+     * Partitions, which are already dropped, are skipped, so dropping may be repeated after a failure.
+     */
+    @Override
+    public void dropSitePartitions(int siteId) {
+        for (String table : PARTITIONED_TABLES) {
+            if (hasPartition(table, siteId)) {
+                jdbcTemplate.execute("ALTER TABLE `" + table + "` DROP PARTITION " + getPartitionName(siteId));
+            }
+        }
+    }
+
+    private boolean hasPartition(String table, int siteId) {
+        Integer count = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM information_schema.PARTITIONS " +
+                "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND PARTITION_NAME = ?",
+                Integer.class, table, getPartitionName(siteId));
+        return count != null && count > 0;
+    }
+
+    private static String getPartitionName(int siteId) {
+        return "p" + siteId;
+    }
+
+}
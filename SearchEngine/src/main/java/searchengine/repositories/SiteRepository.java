@@ -12,18 +12,36 @@ import java.time.Instant;
 import java.util.List;
 
 @Repository
-public interface SiteRepository extends JpaRepository<SiteEntity, Integer> {
+public interface SiteRepository extends JpaRepository<SiteEntity, Integer>, SiteBatchRepository {
 
-    SiteEntity findByUrl(String url);
+    SiteEntity findByUrlAndActiveTrue(String url);
 
-    List<SiteEntity> findAllByStatus(SiteStatus status);
+    List<SiteEntity> findAllByUrl(String url);
+
+    List<SiteEntity> findAllByActiveTrue();
+
+    List<SiteEntity> findAllByStatusAndActiveTrue(SiteStatus status);
+
+    long countByActiveTrue();
 
     @Modifying
     @Transactional
-    @Query("UPDATE SiteEntity SET status = ?2, lastError = ?3, statusTime = ?4 WHERE url = ?1")
+    @Query("UPDATE SiteEntity SET status = ?2, lastError = ?3, statusTime = ?4 WHERE url = ?1 AND active = true")
     void updateStatusByUrl(String url, SiteStatus status, String lastError, Instant statusTime);
 
+    @Modifying
+    @Transactional
+    @Query("UPDATE SiteEntity SET status = ?2, lastError = ?3, statusTime = ?4 WHERE id = ?1")
+    void updateStatusById(int id, SiteStatus status, String lastError, Instant statusTime);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE SiteEntity SET active = false WHERE url = ?1 AND active = true")
+    void deactivateByUrl(String url);
+
+    @Modifying
     @Transactional
-    void deleteByUrl(String url);
+    @Query("UPDATE SiteEntity SET active = true, status = ?2, lastError = null, statusTime = ?3 WHERE id = ?1")
+    void activateById(int id, SiteStatus status, Instant statusTime);
 
 }
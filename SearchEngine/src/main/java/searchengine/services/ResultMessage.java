@@ -16,6 +16,9 @@ public enum ResultMessage {
     URL_TOO_LONG("Указан слишком длинный URL"),
     SITE_IS_UNAVAILABLE("Сайт недоступен"),
     SITE_IS_NOT_INDEXED("Сайт не проиндексирован"),
+    SITE_DATA_NOT_DELETED("Не удалось удалить прежние данные сайта"),
+    SITE_PARTITIONS_NOT_ADDED("Не удалось создать секции таблиц для сайта"),
+    PAGE_NOT_SAVED("Не удалось сохранить страницу в БД"),
     NO_TITLE("Заголовок отсутствует"),
     OFFSET_TOO_LARGE("Параметр 'offset' превышает количество найденных элементов"),
     RUS_WORDS_ARE_REQUIRED("Запрос должен содержать по крайней мере одно слово русского языка, " +
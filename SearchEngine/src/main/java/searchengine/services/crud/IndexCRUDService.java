@@ -3,13 +3,20 @@ package searchengine.services.crud;
 import jakarta.persistence.Table;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.PessimisticLockingFailureException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import searchengine.config.IndexingSettings;
 import searchengine.model.IndexEntity;
 import searchengine.model.LemmaEntity;
+import searchengine.model.SiteEntity;
 import searchengine.repositories.IndexRepository;
 
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
@@ -17,8 +24,11 @@ import java.util.List;
 public class IndexCRUDService implements CRUDService<IndexEntity, Integer> {
 
     private final IndexRepository indexRepository;
+    private final IndexingSettings indexingSettings;
     private final String tableName = IndexEntity.class.getAnnotation(Table.class).name();
 
+    private static final int MAX_SAVE_ATTEMPTS = 3;
+
     @Override
     public IndexEntity getById(Integer id) {
         log.debug("Getting index entity by id {} from table {}", id, tableName);
@@ -31,6 +41,14 @@ public class IndexCRUDService implements CRUDService<IndexEntity, Integer> {
         return indexRepository.findALLByLemmaEntity(lemmaEntity);
     }
 
+    @Transactional(readOnly = true)
+    public void forEachRowBySiteEntity(SiteEntity siteEntity, Consumer<IndexRepository.IndexRow> action) {
+        log.debug("Reading all rows with site '{}' from table {}", siteEntity.getUrl(), tableName);
+        try (Stream<IndexRepository.IndexRow> rows = indexRepository.streamAllBySiteId(siteEntity.getId())) {
+            rows.forEach(action);
+        }
+    }
+
     @Override
     public IndexEntity save(IndexEntity indexEntity) {
         int pageId = indexEntity.getPageEntity().getId();
@@ -46,17 +64,61 @@ public class IndexCRUDService implements CRUDService<IndexEntity, Integer> {
         return indexEntity;
     }
 
-    public void saveAll(Iterable<IndexEntity> indexEntities) {
-        log.info("Saving all indexes to table {}", tableName);
-        while (true) {
+    /**
+     * Inserts rows of a page with multi-row statements of 'index-batch-size' rows (param in settings-file)
+     * in one transaction. In case of a lock wait timeout or a deadlock the transaction is repeated,
+     * but not more than 'MAX_SAVE_ATTEMPTS' times.
+     *
+     * @param lemmaIdsRanks     map where key is ID of a lemma and value is rank of the lemma on the page.
+     * @param lemmaIdsPositions map where key is ID of a lemma and value is encoded positions of the lemma on the page.
+     * @throws DataAccessException if the rows are not saved, then none of them is in the table.
+     */
+    public void saveAll(int siteId, int pageId, Map<Integer, Integer> lemmaIdsRanks,
+                        Map<Integer, byte[]> lemmaIdsPositions) {
+        log.info("Saving {} indexes of page with id {} to table {}", lemmaIdsRanks.size(), pageId, tableName);
+        int[] lemmaIds = new int[lemmaIdsRanks.size()];
+        int[] ranks = new int[lemmaIdsRanks.size()];
+        byte[][] positions = new byte[lemmaIdsRanks.size()][];
+        int i = 0;
+        for (Map.Entry<Integer, Integer> entry : lemmaIdsRanks.entrySet()) {
+            lemmaIds[i] = entry.getKey();
+            ranks[i] = entry.getValue();
+            positions[i] = lemmaIdsPositions.get(entry.getKey());
+            i++;
+        }
+        long startTime = System.nanoTime();
+        for (int attempt = 1; ; attempt++) {
             try {
-                indexRepository.saveAll(indexEntities);
+                indexRepository.saveAll(siteId, pageId, lemmaIds, ranks, positions, indexingSettings.getIndexBatchSize());
                 break;
-            } catch (CannotAcquireLockException e) {
-                log.warn("Error while saving indexes to table {}: {}", tableName, e.toString());
-                log.warn("Restart transaction: save indexes due to the error: {}", e.toString());
+            } catch (PessimisticLockingFailureException e) {
+                if (attempt == MAX_SAVE_ATTEMPTS) {
+                    log.error("Lock error while saving indexes of page with id {} to table {}, " +
+                            "attempts are exhausted: {}", pageId, tableName, e.toString());
+                    throw e;
+                }
+                log.warn("Lock error while saving indexes to table {}, attempt {}: {}", tableName, attempt, e.toString());
+            } catch (DataAccessException e) {
+                log.error("Error while saving indexes of page with id {} to table {}: {}",
+                        pageId, tableName, e.toString());
+                throw e;
             }
         }
+        if (log.isDebugEnabled() && lemmaIds.length > 0) {
+            long elapsed = Math.max(System.nanoTime() - startTime, 1);
+            log.debug("Saved {} rows to table {} at {} rows/s", lemmaIds.length, tableName,
+                    lemmaIds.length * 1_000_000_000L / elapsed);
+        }
+    }
+
+    public List<String> getLemmasByPageId(int pageId) {
+        log.debug("Getting lemmas of page with id {} from table {}", pageId, tableName);
+        return indexRepository.findLemmasByPageId(pageId);
+    }
+
+    public void deleteByPageId(int pageId) {
+        int count = indexRepository.deleteByPageId(pageId);
+        log.info("Deleted {} rows with page_id {} from table {}", count, pageId, tableName);
     }
 
     @Override
@@ -1,6 +1,8 @@
 package searchengine.services.crud;
 
 import jakarta.persistence.Table;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.PessimisticLockingFailureException;
 import org.springframework.transaction.annotation.Transactional;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -19,6 +21,8 @@ public class LemmaCRUDService implements CRUDService<LemmaEntity, Integer> {
     private final LemmaRepository lemmaRepository;
     private final String tableName = LemmaEntity.class.getAnnotation(Table.class).name();
 
+    private static final int MAX_SAVE_ATTEMPTS = 3;
+
     @Override
     public LemmaEntity getById(Integer id) {
         log.info("Getting lemmaEntity by id {} from table '{}'", id, tableName);
@@ -56,6 +60,22 @@ public class LemmaCRUDService implements CRUDService<LemmaEntity, Integer> {
         return lemmaEntities;
     }
 
+    /**
+     * Returns a Map where key is lemma and value is ID of the lemma. Lemmas absent in the table are not included.
+     */
+    public Map<String, Integer> getIdsBySiteIdAndLemmas(Integer siteId, Collection<String> lemmas) {
+        log.debug("Getting IDs of {} lemmas with site_id {} from table '{}'", lemmas.size(), siteId, tableName);
+        return lemmaRepository.findIdsBySiteIdAndLemmas(siteId, lemmas);
+    }
+
+    /**
+     * Returns a Map where key is lemma and value is ID of the lemma, for all lemmas of the site.
+     */
+    public Map<String, Integer> getAllIdsBySiteId(Integer siteId) {
+        log.debug("Getting IDs of all lemmas with site_id {} from table '{}'", siteId, tableName);
+        return lemmaRepository.findAllIdsBySiteId(siteId);
+    }
+
     public int getCount() {
         log.debug("Getting all rows count from table '{}'", tableName);
         return (int) lemmaRepository.count();
@@ -80,18 +100,61 @@ public class LemmaCRUDService implements CRUDService<LemmaEntity, Integer> {
         return lemmaEntity;
     }
 
-    @Transactional
+    /**
+     * Inserts lemmas of the site or increases their frequencies by 1.
+     */
     public void saveOrUpdateLemmas(Integer siteId, Iterable<String> lemmas) {
         log.info("Saving lemmas: '{}' to table '{}'", lemmas, tableName);
-        try {
-            lemmas.forEach(lemma -> lemmaRepository.saveOrUpdate(siteId, lemma));
-        } catch (Exception e) {
-            log.warn("Error while saving lemmas '{}' to table '{}': {}", lemmas, tableName, e.toString());
-        }
+        SortedMap<String, Integer> lemmasFrequencies = new TreeMap<>();
+        lemmas.forEach(lemma -> lemmasFrequencies.put(lemma, 1));
+        saveOrUpdateAll(siteId, lemmasFrequencies);
     }
 
-    public void saveOrUpdateLemmasWithoutDeadLocks(Integer siteId, Iterable<String> lemmas) {
-        saveOrUpdateLemmas(siteId, lemmas);
+    /**
+     * Inserts lemmas of the site, absent in the table, with zero frequency.
+     */
+    public void saveLemmasIfAbsent(Integer siteId, Iterable<String> lemmas) {
+        log.info("Saving new lemmas: '{}' to table '{}'", lemmas, tableName);
+        SortedMap<String, Integer> lemmasFrequencies = new TreeMap<>();
+        lemmas.forEach(lemma -> lemmasFrequencies.put(lemma, 0));
+        saveOrUpdateAll(siteId, lemmasFrequencies);
+    }
+
+    /**
+     * @param frequenciesDeltas map where key is lemma and value is increment of the lemma frequency.
+     * @throws DataAccessException if the frequencies are not saved, then none of them is changed.
+     */
+    public void increaseLemmasFrequencies(Integer siteId, Map<String, Integer> frequenciesDeltas) {
+        log.info("Increasing frequencies of {} lemmas in table '{}'", frequenciesDeltas.size(), tableName);
+        saveOrUpdateAll(siteId, new TreeMap<>(frequenciesDeltas));
+    }
+
+    /**
+     * Writes lemmas with a few multi-row statements in one transaction. Lemmas are sorted, so concurrent calls
+     * lock rows in the same order. In case of a lock wait timeout or a deadlock the transaction is repeated,
+     * but not more than 'MAX_SAVE_ATTEMPTS' times.
+     *
+     * @throws DataAccessException if the lemmas are not saved, then frequencies in the table are not changed.
+     */
+    private void saveOrUpdateAll(Integer siteId, SortedMap<String, Integer> lemmasFrequencies) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                lemmaRepository.saveOrUpdateAll(siteId, lemmasFrequencies);
+                return;
+            } catch (PessimisticLockingFailureException e) {
+                if (attempt == MAX_SAVE_ATTEMPTS) {
+                    log.error("Lock error while saving {} lemmas to table '{}', attempts are exhausted: {}",
+                            lemmasFrequencies.size(), tableName, e.toString());
+                    throw e;
+                }
+                log.warn("Lock error while saving lemmas to table '{}', attempt {}: {}",
+                        tableName, attempt, e.toString());
+            } catch (DataAccessException e) {
+                log.error("Error while saving lemmas '{}' to table '{}': {}",
+                        lemmasFrequencies.keySet(), tableName, e.toString());
+                throw e;
+            }
+        }
     }
 
     public void decreaseLemmasFrequenciesByOne(SiteEntity siteEntity, Set<String> lemmas) {
@@ -104,6 +167,17 @@ public class LemmaCRUDService implements CRUDService<LemmaEntity, Integer> {
         }
     }
 
+    /**
+     * Sets frequencies of lemmas of the site to the numbers of their rows in table 'index'
+     * and deletes lemmas, which have no such rows.
+     */
+    public void recalculateFrequencies(Integer siteId) {
+        log.info("Recalculating frequencies of lemmas with site_id {} in table '{}'", siteId, tableName);
+        lemmaRepository.recalculateFrequenciesBySiteId(siteId);
+        int count = lemmaRepository.deleteUnusedBySiteId(siteId);
+        log.info("Deleted {} unused lemmas with site_id {} from table '{}'", count, siteId, tableName);
+    }
+
     @Override
     public void deleteById(Integer id) {
         log.info("Deleting row with id {} from table '{}'", id, tableName);
@@ -4,16 +4,32 @@ import jakarta.persistence.Table;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import searchengine.model.PageEntity;
 import searchengine.model.SiteEntity;
+import searchengine.repositories.IndexRepository;
 import searchengine.repositories.PageRepository;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Tables are partitioned by site and have no foreign keys, so rows of table 'index' of deleted pages
+ * are deleted explicitly before the pages.
+ */
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class PageCRUDService implements CRUDService<PageEntity, Integer> {
 
+    private static final int PATHS_PER_STATEMENT = 500;
+    private static final int IDS_PER_STATEMENT = 1000;
+
     private final PageRepository pageRepository;
+    private final IndexRepository indexRepository;
     private final String tableName = PageEntity.class.getAnnotation(Table.class).name();
 
     @Override
@@ -32,6 +48,21 @@ public class PageCRUDService implements CRUDService<PageEntity, Integer> {
         return pageRepository.findIdBySiteEntityAndPath(siteEntity, path);
     }
 
+    public PageRepository.PageVersionRow getVersionBySiteAndPath(SiteEntity siteEntity, String path) {
+        log.debug("Getting version of page '{}' from table '{}'", siteEntity.getUrl().concat(path), tableName);
+        return pageRepository.findVersionBySiteEntityAndPath(siteEntity, path);
+    }
+
+    public PageRepository.PageTextRow getTextById(int id) {
+        log.debug("Getting text of page with id {} from table '{}'", id, tableName);
+        return pageRepository.findTextById(id);
+    }
+
+    public String getContentById(int id) {
+        log.debug("Getting content of page with id {} from table '{}'", id, tableName);
+        return pageRepository.findContentById(id);
+    }
+
     public int getCount() {
         log.debug("Getting all rows count from table '{}'", tableName);
         return (int) pageRepository.count();
@@ -42,6 +73,28 @@ public class PageCRUDService implements CRUDService<PageEntity, Integer> {
         return pageRepository.countBySiteEntity(siteEntity);
     }
 
+    public int getMaxIdBySiteEntity(SiteEntity siteEntity) {
+        log.debug("Getting max id of rows with site_id {} from table '{}'", siteEntity.getId(), tableName);
+        Integer maxId = pageRepository.findMaxIdBySiteEntity(siteEntity);
+        return maxId == null ? 0 : maxId;
+    }
+
+    @Transactional(readOnly = true)
+    public void forEachPathBySiteEntity(SiteEntity siteEntity, Consumer<String> action) {
+        log.debug("Reading paths of rows with site_id {} from table '{}'", siteEntity.getId(), tableName);
+        try (Stream<String> paths = pageRepository.streamPathsBySiteEntity(siteEntity)) {
+            paths.forEach(action);
+        }
+    }
+
+    @Transactional(readOnly = true)
+    public void forEachIdBySiteEntity(SiteEntity siteEntity, Consumer<Integer> action) {
+        log.debug("Reading ids of rows with site_id {} from table '{}'", siteEntity.getId(), tableName);
+        try (Stream<Integer> ids = pageRepository.streamIdsBySiteEntity(siteEntity)) {
+            ids.forEach(action);
+        }
+    }
+
     @Override
     public PageEntity save(PageEntity pageEntity) {
         String pageUrl = pageEntity.getSiteEntity().getUrl().concat(pageEntity.getPath());
@@ -54,10 +107,56 @@ public class PageCRUDService implements CRUDService<PageEntity, Integer> {
         return pageEntity;
     }
 
+    public void updateContentById(int id, int code, String content, String title, String plainText,
+                                  long textHash, String etag, String lastModified) {
+        log.info("Updating content of row with id {} in table '{}'", id, tableName);
+        pageRepository.updateContentById(id, code, content, title, plainText, textHash, etag, lastModified);
+    }
+
+    public void updateVersionById(int id, long textHash, String etag, String lastModified) {
+        log.debug("Updating version of row with id {} in table '{}'", id, tableName);
+        pageRepository.updateVersionById(id, textHash, etag, lastModified);
+    }
+
     @Override
     public void deleteById(Integer id) {
         log.info("Deleting row with id {} from table '{}'", id, tableName);
+        indexRepository.deleteByPageId(id);
         pageRepository.deleteById(id);
     }
 
+    public void deleteBySiteEntityAndIdGreaterThan(SiteEntity siteEntity, int id) {
+        indexRepository.deleteBySiteIdAndPageIdGreaterThan(siteEntity.getId(), id);
+        int count = pageRepository.deleteBySiteEntityAndIdGreaterThan(siteEntity, id);
+        log.info("Deleted {} rows with site_id {} and id greater than {} from table '{}'",
+                count, siteEntity.getId(), id, tableName);
+    }
+
+    /**
+     * Deletes pages with statements of not more than 'PATHS_PER_STATEMENT' paths.
+     */
+    public void deleteBySiteEntityAndPaths(SiteEntity siteEntity, Collection<String> paths) {
+        List<String> pathsList = new ArrayList<>(paths);
+        int count = 0;
+        for (int i = 0; i < pathsList.size(); i += PATHS_PER_STATEMENT) {
+            List<String> chunk = pathsList.subList(i, Math.min(i + PATHS_PER_STATEMENT, pathsList.size()));
+            indexRepository.deleteBySiteIdAndPagePathIn(siteEntity.getId(), chunk);
+            count += pageRepository.deleteBySiteEntityAndPathIn(siteEntity, chunk);
+        }
+        log.info("Deleted {} rows with site_id {} by paths from table '{}'", count, siteEntity.getId(), tableName);
+    }
+
+    /**
+     * Deletes pages with statements of not more than 'IDS_PER_STATEMENT' IDs.
+     */
+    public void deleteByIds(List<Integer> ids) {
+        int count = 0;
+        for (int i = 0; i < ids.size(); i += IDS_PER_STATEMENT) {
+            List<Integer> chunk = ids.subList(i, Math.min(i + IDS_PER_STATEMENT, ids.size()));
+            indexRepository.deleteByPageIdIn(chunk);
+            count += pageRepository.deleteByIdIn(chunk);
+        }
+        log.info("Deleted {} rows by ids from table '{}'", count, tableName);
+    }
+
 }
@@ -3,20 +3,29 @@ package searchengine.services.crud;
 import jakarta.persistence.Table;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.PessimisticLockingFailureException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import searchengine.config.IndexingSettings;
 import searchengine.model.SiteEntity;
 import searchengine.model.SiteStatus;
 import searchengine.repositories.SiteRepository;
 
 import java.time.Instant;
 import java.util.List;
+import java.util.function.IntSupplier;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class SiteCRUDService implements CRUDService<SiteEntity, Integer> {
 
+    private static final int LEMMAS_PER_STATEMENT = 10_000;
+    private static final int MAX_DELETE_ATTEMPTS = 3;
+    private static final int PROGRESS_STEP_PERCENT = 10;
+
     private final SiteRepository siteRepository;
+    private final IndexingSettings indexingSettings;
     private final String tableName = SiteEntity.class.getAnnotation(Table.class).name();
 
     @Override
@@ -25,34 +34,72 @@ public class SiteCRUDService implements CRUDService<SiteEntity, Integer> {
         return siteRepository.findById(id).orElse(null);
     }
 
+    /**
+     * @return active generation of the site or null.
+     */
     public SiteEntity getByUrl(String url) {
         log.debug("Getting site '{}' from table '{}'", url, tableName);
-        return siteRepository.findByUrl(url);
+        return siteRepository.findByUrlAndActiveTrue(url);
+    }
+
+    /**
+     * @return all generations of the site, active and inactive.
+     */
+    public List<SiteEntity> getAllGenerationsByUrl(String url) {
+        log.debug("Getting all generations of site '{}' from table '{}'", url, tableName);
+        return siteRepository.findAllByUrl(url);
     }
 
+    /**
+     * @return all generations of all sites.
+     */
     public List<SiteEntity> getAll() {
         log.debug("Getting all sites from table '{}'", tableName);
         return siteRepository.findAll();
     }
 
+    public List<SiteEntity> getAllActive() {
+        log.debug("Getting all active sites from table '{}'", tableName);
+        return siteRepository.findAllByActiveTrue();
+    }
+
     public List<SiteEntity> getAllByStatus(SiteStatus status) {
-        log.debug("Getting all sites with status {} from table '{}'", status, tableName);
-        return siteRepository.findAllByStatus(status);
+        log.debug("Getting all active sites with status {} from table '{}'", status, tableName);
+        return siteRepository.findAllByStatusAndActiveTrue(status);
     }
 
     public int getCount() {
-        log.debug("Getting all rows count from table '{}'", tableName);
-        return (int) siteRepository.count();
+        log.debug("Getting active rows count from table '{}'", tableName);
+        return (int) siteRepository.countByActiveTrue();
     }
 
+    /**
+     * If tables 'page', 'lemma' and 'index' are partitioned by site, partitions of a new site are added after saving,
+     * as rows of the site can not be inserted without them.
+     *
+     * @throws RuntimeException if partitions of a new site have not been added. The row of the site is deleted then.
+     */
     @Override
     public SiteEntity save(SiteEntity siteEntity) {
         String siteUrl = siteEntity.getUrl();
+        boolean isNew = siteEntity.getId() == null;
         log.info("Saving site '{}' to table '{}'", siteUrl, tableName);
         try {
             siteRepository.save(siteEntity);
         } catch (Exception e) {
             log.warn("Error while saving siteEntity '{}' to table '{}': {}", siteUrl, tableName, e.toString());
+            return siteEntity;
+        }
+        if (isNew && siteEntity.getId() != null && siteRepository.isPartitionedBySite()) {
+            log.info("Adding partitions of site '{}' with id {}", siteUrl, siteEntity.getId());
+            try {
+                siteRepository.addSitePartitions(siteEntity.getId());
+            } catch (RuntimeException e) {
+                log.error("Error while adding partitions of site '{}' with id {}, the site is deleted: {}",
+                        siteUrl, siteEntity.getId(), e.toString());
+                siteRepository.deleteSiteRowById(siteEntity.getId());
+                throw e;
+            }
         }
         return siteEntity;
     }
@@ -62,15 +109,111 @@ public class SiteCRUDService implements CRUDService<SiteEntity, Integer> {
         siteRepository.updateStatusByUrl(url, newSiteStatus, lastError, Instant.now());
     }
 
+    public void updateStatusById(int id, SiteStatus newSiteStatus, String lastError) {
+        log.info("Changing site status for site with id {} to: '{}' in table '{}'", id, newSiteStatus, tableName);
+        siteRepository.updateStatusById(id, newSiteStatus, lastError, Instant.now());
+    }
+
+    /**
+     * Makes the generation of the site active with status INDEXED and the previous active generation inactive
+     * in one transaction, so searches see either the previous generation or the new one.
+     */
+    @Transactional
+    public void activate(SiteEntity siteEntity) {
+        log.info("Activating generation with id {} of site '{}' in table '{}'",
+                siteEntity.getId(), siteEntity.getUrl(), tableName);
+        siteRepository.deactivateByUrl(siteEntity.getUrl());
+        siteRepository.activateById(siteEntity.getId(), SiteStatus.INDEXED, Instant.now());
+        siteEntity.setActive(true);
+        siteEntity.setStatus(SiteStatus.INDEXED);
+    }
+
+    /**
+     * Deletes the site with all its data (see {@link #deleteWithData(int, String)}).
+     */
     @Override
     public void deleteById(Integer id) {
-        log.info("Deleting row with id {} from table '{}'", id, tableName);
-        siteRepository.deleteById(id);
+        SiteEntity siteEntity = getById(id);
+        if (siteEntity != null) {
+            deleteWithData(id, siteEntity.getUrl());
+        }
     }
 
+    /**
+     * Deletes all generations of the site with all their data.
+     */
     public void deleteByUrl(String url) {
         log.info("Deleting site '{}' from table '{}'", url, tableName);
-        siteRepository.deleteByUrl(url);
+        getAllGenerationsByUrl(url).forEach(siteEntity -> deleteWithData(siteEntity.getId(), url));
+    }
+
+    /**
+     * Deletes rows of the site from tables 'index', 'page', 'lemma' and 'site' in this order with set-based statements
+     * without loading entities. Rows of tables 'index' and 'page' are deleted by ranges of 'delete-batch-size' pages
+     * (param in settings-file), lemmas by 'LEMMAS_PER_STATEMENT' rows, so every statement is a short transaction.
+     * A statement, which has failed due to a lock wait timeout or a deadlock, is repeated, but not more than
+     * 'MAX_DELETE_ATTEMPTS' times. Deletion may be repeated after a failure: already deleted rows are skipped.
+     * If the site has its own partitions, they are dropped instead, which takes constant time regardless of the size.
+     *
+     * @throws RuntimeException if a statement has failed.
+     */
+    public void deleteWithData(int siteId, String url) {
+        long startTime = System.currentTimeMillis();
+        int pagesCount = siteRepository.countPagesBySiteId(siteId);
+        log.info("Deleting site '{}' with id {} and its {} pages", url, siteId, pagesCount);
+
+        if (siteRepository.hasSitePartitions(siteId)) {
+            siteRepository.dropSitePartitions(siteId);
+            executeDelete(() -> siteRepository.deleteSiteRowById(siteId));
+            log.info("Deleted site '{}' with id {} by dropping its partitions: {} pages in {} ms", url, siteId,
+                    pagesCount, System.currentTimeMillis() - startTime);
+            return;
+        }
+
+        int batchSize = indexingSettings.getDeleteBatchSize();
+        int deletedPagesCount = 0;
+        int nextProgressPercent = PROGRESS_STEP_PERCENT;
+        int afterPageId = 0;
+        while (true) {
+            int fromPageId = afterPageId;
+            int lastPageId = siteRepository.findPagesChunkEnd(siteId, fromPageId, batchSize);
+            if (lastPageId == 0) {
+                break;
+            }
+            executeDelete(() -> siteRepository.deleteIndexesByPageIdRange(siteId, fromPageId, lastPageId));
+            deletedPagesCount += executeDelete(() -> siteRepository.deletePagesByIdRange(siteId, fromPageId, lastPageId));
+            afterPageId = lastPageId;
+            if (pagesCount > 0 && deletedPagesCount * 100L / pagesCount >= nextProgressPercent) {
+                log.info("Deleting site '{}': {} of {} pages deleted ({}%)", url, deletedPagesCount, pagesCount,
+                        deletedPagesCount * 100L / pagesCount);
+                nextProgressPercent = (int) (deletedPagesCount * 100L / pagesCount) / PROGRESS_STEP_PERCENT
+                        * PROGRESS_STEP_PERCENT + PROGRESS_STEP_PERCENT;
+            }
+        }
+
+        int deletedLemmasCount = 0;
+        int count;
+        do {
+            count = executeDelete(() -> siteRepository.deleteLemmasBySiteId(siteId, LEMMAS_PER_STATEMENT));
+            deletedLemmasCount += count;
+        } while (count == LEMMAS_PER_STATEMENT);
+
+        executeDelete(() -> siteRepository.deleteSiteRowById(siteId));
+        log.info("Deleted site '{}' with id {}: {} pages, {} lemmas in {} ms", url, siteId,
+                deletedPagesCount, deletedLemmasCount, System.currentTimeMillis() - startTime);
+    }
+
+    private int executeDelete(IntSupplier statement) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return statement.getAsInt();
+            } catch (PessimisticLockingFailureException e) {
+                if (attempt == MAX_DELETE_ATTEMPTS) {
+                    throw e;
+                }
+                log.warn("Lock error while deleting site data, attempt {}: {}", attempt, e.toString());
+            }
+        }
     }
 
 }
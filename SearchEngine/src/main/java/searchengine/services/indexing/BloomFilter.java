@@ -0,0 +1,51 @@
+package searchengine.services.indexing;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Concurrent Bloom filter of 64-bit hashes: 10 bits and 7 hash functions per expected element,
+ * so about 1% of absent elements are reported as present, until the number of elements exceeds the expected one.
+ * Elements are never reported as absent after they have been put.
+ */
+class BloomFilter {
+
+    private static final int BITS_PER_ELEMENT = 10;
+    private static final int HASH_FUNCTIONS_COUNT = 7;
+
+    private final AtomicLongArray words;
+    private final long bitsMask;
+
+    BloomFilter(int expectedElements) {
+        long bitsCount = Long.highestOneBit(Math.max((long) expectedElements * BITS_PER_ELEMENT, Long.SIZE) - 1) << 1;
+        this.words = new AtomicLongArray((int) (bitsCount / Long.SIZE));
+        this.bitsMask = bitsCount - 1;
+    }
+
+
+    void put(long hash) {
+        long h1 = hash;
+        long h2 = Long.rotateLeft(hash, 32) | 1;
+        for (int i = 0; i < HASH_FUNCTIONS_COUNT; i++) {
+            long bit = (h1 + i * h2) & bitsMask;
+            long mask = 1L << bit;
+            int wordIdx = (int) (bit >>> 6);
+            if ((words.get(wordIdx) & mask) == 0) {
+                words.getAndUpdate(wordIdx, word -> word | mask);
+            }
+        }
+    }
+
+
+    boolean mightContain(long hash) {
+        long h1 = hash;
+        long h2 = Long.rotateLeft(hash, 32) | 1;
+        for (int i = 0; i < HASH_FUNCTIONS_COUNT; i++) {
+            long bit = (h1 + i * h2) & bitsMask;
+            if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
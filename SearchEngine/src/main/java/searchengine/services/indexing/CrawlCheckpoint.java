@@ -0,0 +1,21 @@
+package searchengine.services.indexing;
+
+import java.util.List;
+
+/**
+ * Saved state of a site crawl: links of the frontier and of pages, which were in progress.
+ * Pages of the site with IDs greater than 'lastPageId' and pages of the links were saved to the DB
+ * after the checkpoint, so they are deleted before the crawl is resumed.
+ *
+ * @param lastPageId max ID of the saved pages of the site at the moment of the checkpoint, 0 if there were none.
+ */
+record CrawlCheckpoint(String siteUrl, int lastPageId, List<Link> links) {
+
+    /**
+     * @param referrer URL of the page, where the link was found.
+     * @param depth    number of links from the main page to the page.
+     */
+    record Link(String path, String referrer, int depth) {
+    }
+
+}
@@ -0,0 +1,116 @@
+package searchengine.services.indexing;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import searchengine.config.IndexingSettings;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Keeps checkpoints of site crawls in files of directory 'checkpoint-dir' (param in settings-file), one file per site.
+ * A checkpoint is written to a temporary file, which then replaces the previous checkpoint with an atomic move,
+ * so a crash during saving does not damage the saved checkpoint.
+ */
+@Slf4j
+@Component
+public class CrawlCheckpointStore {
+
+    private static final int FORMAT_VERSION = 1;
+    private static final String FILE_EXTENSION = ".checkpoint";
+
+    private final Path checkpointDir;
+
+    public CrawlCheckpointStore(IndexingSettings indexingSettings) {
+        this.checkpointDir = Path.of(indexingSettings.getCheckpointDir());
+    }
+
+
+    void save(CrawlCheckpoint checkpoint) {
+        Path file = getFile(checkpoint.siteUrl());
+        try {
+            Files.createDirectories(checkpointDir);
+            Path tmpFile = Files.createTempFile(checkpointDir, file.getFileName().toString(), ".tmp");
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(new GZIPOutputStream(Files.newOutputStream(tmpFile))))) {
+                out.writeInt(FORMAT_VERSION);
+                out.writeUTF(checkpoint.siteUrl());
+                out.writeInt(checkpoint.lastPageId());
+                out.writeInt(checkpoint.links().size());
+                for (CrawlCheckpoint.Link link : checkpoint.links()) {
+                    out.writeUTF(link.path());
+                    out.writeUTF(link.referrer());
+                    out.writeInt(link.depth());
+                }
+            } catch (IOException | RuntimeException e) {
+                Files.deleteIfExists(tmpFile);
+                throw e;
+            }
+            Files.move(tmpFile, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            log.debug("Сохранена контрольная точка обхода сайта {}: {} ссылок",
+                    checkpoint.siteUrl(), checkpoint.links().size());
+        } catch (IOException | RuntimeException e) {
+            log.warn("Ошибка при сохранении контрольной точки обхода сайта {}: {}", checkpoint.siteUrl(), e.toString());
+        }
+    }
+
+
+    /**
+     * @return checkpoint of the site or null, if the site has no valid checkpoint.
+     */
+    CrawlCheckpoint load(String siteUrl) {
+        Path file = getFile(siteUrl);
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new GZIPInputStream(Files.newInputStream(file))))) {
+            if (in.readInt() != FORMAT_VERSION || !in.readUTF().equals(siteUrl)) {
+                log.warn("Контрольная точка обхода сайта {} не соответствует сайту или версии формата", siteUrl);
+                return null;
+            }
+            int lastPageId = in.readInt();
+            int linksCount = in.readInt();
+            List<CrawlCheckpoint.Link> links = new ArrayList<>(linksCount);
+            for (int i = 0; i < linksCount; i++) {
+                links.add(new CrawlCheckpoint.Link(in.readUTF(), in.readUTF(), in.readInt()));
+            }
+            return new CrawlCheckpoint(siteUrl, lastPageId, links);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Ошибка при чтении контрольной точки обхода сайта {}: {}", siteUrl, e.toString());
+            return null;
+        }
+    }
+
+
+    void delete(String siteUrl) {
+        try {
+            Files.deleteIfExists(getFile(siteUrl));
+        } catch (IOException e) {
+            log.warn("Ошибка при удалении контрольной точки обхода сайта {}: {}", siteUrl, e.toString());
+        }
+    }
+
+
+    /**
+     * File name is SHA-256 hash of the site URL, so it is short and contains only characters allowed
+     * in any file system. The URL itself is saved in the file and is checked on loading.
+     */
+    private Path getFile(String siteUrl) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(siteUrl.getBytes(StandardCharsets.UTF_8));
+            return checkpointDir.resolve(HexFormat.of().formatHex(hash).concat(FILE_EXTENSION));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+}
@@ -0,0 +1,39 @@
+package searchengine.services.indexing;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Executors of the crawl stages, shared by crawlers of all sites.
+ */
+@Getter
+@RequiredArgsConstructor
+class CrawlExecutors {
+
+    private final ExecutorService parseExecutor;
+    private final ExecutorService writeExecutor;
+    /**
+     * Virtual-thread executor for blocking fetches, or null if pages are fetched with asynchronous requests.
+     */
+    private final ExecutorService fetchExecutor;
+    /**
+     * Permits for fetches in progress of all sites. Is used along with 'fetchExecutor'.
+     */
+    private final Semaphore fetchPermits;
+
+    boolean isVirtualThreadsMode() {
+        return fetchExecutor != null;
+    }
+
+    void shutdown() {
+        parseExecutor.shutdown();
+        writeExecutor.shutdown();
+        if (fetchExecutor != null) {
+            fetchExecutor.shutdown();
+        }
+    }
+
+}
@@ -0,0 +1,65 @@
+package searchengine.services.indexing;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Response of a WEB-server to a request of a page.
+ */
+@Getter
+@RequiredArgsConstructor
+public class FetchedPage {
+
+    /**
+     * URL of the page after all redirects.
+     */
+    private final String url;
+    private final int statusCode;
+    private final String contentType;
+    /**
+     * null, if the page has no text content.
+     */
+    private final byte[] body;
+    /**
+     * Charset from header 'Content-Type' or null.
+     */
+    private final String charset;
+    /**
+     * Value of header 'Retry-After' or null.
+     */
+    private final String retryAfter;
+    /**
+     * Value of header 'ETag' or null.
+     */
+    private final String etag;
+    /**
+     * Value of header 'Last-Modified' or null.
+     */
+    private final String lastModified;
+
+
+    public boolean isNotModified() {
+        return statusCode == 304;
+    }
+
+
+    /**
+     * Parses the body as {@link Jsoup#connect(String)} does: the charset is taken from header 'Content-Type',
+     * otherwise from tag 'meta' of the page, otherwise UTF-8 is used. The charset is available by
+     * {@link Document#charset()} of the result.
+     */
+    public Document parseBody() {
+        try {
+            return Jsoup.parse(new ByteArrayInputStream(body), charset, url);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+}
@@ -0,0 +1,22 @@
+package searchengine.services.indexing;
+
+/**
+ * 64-bit hash of strings: FNV-1a with final mixing of bits.
+ */
+final class Hash64 {
+
+    private Hash64() {
+    }
+
+
+    static long of(CharSequence chars) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < chars.length(); i++) {
+            hash = (hash ^ chars.charAt(i)) * 0x100000001b3L;
+        }
+        hash = (hash ^ (hash >>> 33)) * 0xff51afd7ed558ccdL;
+        hash = (hash ^ (hash >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return hash ^ (hash >>> 33);
+    }
+
+}
@@ -0,0 +1,65 @@
+package searchengine.services.indexing;
+
+/**
+ * Token bucket of requests to a host: requests start not more often than once per interval on average,
+ * but up to 'burst' requests may start at once after a pause. Methods only calculate start times of requests,
+ * so callers wait for their turn without holding a monitor.
+ */
+class HostRateLimiter {
+
+    static final long MAX_INTERVAL_MILLIS = 60_000;
+
+    private final long baseIntervalMillis;
+    private final int burst;
+    private long intervalMillis;
+    // теоретическое время прибытия следующего запроса (алгоритм GCRA)
+    private long theoreticalArrivalTime;
+    private long blockedUntil;
+
+    HostRateLimiter(long baseIntervalMillis, int burst) {
+        this.baseIntervalMillis = baseIntervalMillis;
+        this.intervalMillis = baseIntervalMillis;
+        this.burst = Math.max(burst, 1);
+    }
+
+
+    /**
+     * Reserves a start time of a request.
+     *
+     * @return time in milliseconds, when the request may be started.
+     */
+    synchronized long reserve(long now) {
+        long base = Math.max(theoreticalArrivalTime, now);
+        long startTime = Math.max(Math.max(now, base - (burst - 1) * intervalMillis), blockedUntil);
+        theoreticalArrivalTime = Math.max(base, startTime) + intervalMillis;
+        return startTime;
+    }
+
+
+    /**
+     * Is called when the host answered 'Too Many Requests' or 'Service Unavailable'.
+     * Doubles the interval between requests and suspends requests for 'retryAfterMillis'
+     * or, if the host did not specify it, for the new interval.
+     */
+    synchronized void slowDown(long now, long retryAfterMillis) {
+        intervalMillis = Math.min(Math.max(intervalMillis * 2, 1_000), MAX_INTERVAL_MILLIS);
+        long pause = retryAfterMillis > 0 ? retryAfterMillis : intervalMillis;
+        blockedUntil = Math.max(blockedUntil, now + pause);
+    }
+
+
+    /**
+     * Is called on a successful response. Gradually returns the interval to the base one.
+     */
+    synchronized void speedUp() {
+        if (intervalMillis > baseIntervalMillis) {
+            intervalMillis = Math.max(baseIntervalMillis, intervalMillis * 3 / 4);
+        }
+    }
+
+
+    synchronized long getIntervalMillis() {
+        return intervalMillis;
+    }
+
+}
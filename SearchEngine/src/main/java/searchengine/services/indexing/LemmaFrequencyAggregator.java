@@ -0,0 +1,173 @@
+package searchengine.services.indexing;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import searchengine.config.IndexingSettings;
+import searchengine.services.crud.LemmaCRUDService;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Accumulates frequencies of lemmas of the sites being indexed in memory and writes them to table 'lemma'
+ * in batches: when the number of accumulated lemmas reaches param 'lemma-flush-threshold' in settings-file,
+ * when param 'lemma-flush-interval' (in seconds) has passed since the last flush, and when indexing of the site
+ * is finished or stopped. So the rows of frequent lemmas are updated once per flush instead of once per page.
+ * New lemmas are inserted immediately with zero frequency, because rows of table 'index' refer to them,
+ * and their IDs are put to {@link LemmaIdCache}.
+ * If frequencies are not saved, they stay accumulated till the next flush. If the last flush of the site fails,
+ * frequencies of the site are recalculated by table 'index'.
+ */
+@Slf4j
+@Component
+public class LemmaFrequencyAggregator {
+
+    private final LemmaCRUDService lemmaService;
+    private final LemmaIdCache lemmaIdCache;
+    private final int flushThreshold;
+    private final long flushIntervalMillis;
+
+    private final Map<Integer, SiteLemmaCounters> sitesCounters = new ConcurrentHashMap<>();
+
+    public LemmaFrequencyAggregator(LemmaCRUDService lemmaService,
+                                    LemmaIdCache lemmaIdCache,
+                                    IndexingSettings indexingSettings) {
+        this.lemmaService = lemmaService;
+        this.lemmaIdCache = lemmaIdCache;
+        this.flushThreshold = indexingSettings.getLemmaFlushThreshold();
+        this.flushIntervalMillis = indexingSettings.getLemmaFlushInterval() * 1000L;
+    }
+
+
+    public void startSite(int siteId) {
+        sitesCounters.put(siteId, new SiteLemmaCounters());
+    }
+
+
+    public boolean isAggregating(int siteId) {
+        return sitesCounters.containsKey(siteId);
+    }
+
+
+    /**
+     * Increases frequencies of the lemmas of a page by 1.
+     */
+    public void addLemmas(int siteId, Collection<String> lemmas) {
+        SiteLemmaCounters counters = sitesCounters.get(siteId);
+        if (counters == null) {
+            lemmaService.saveOrUpdateLemmas(siteId, lemmas);
+            return;
+        }
+
+        List<String> newLemmas = lemmaIdCache.getAbsentLemmas(siteId, lemmas);
+        if (!newLemmas.isEmpty()) {
+            lemmaService.saveLemmasIfAbsent(siteId, newLemmas);
+            lemmaIdCache.loadLemmas(siteId, newLemmas);
+        }
+
+        counters.lock.readLock().lock();
+        try {
+            lemmas.forEach(lemma ->
+                    counters.pending.computeIfAbsent(lemma, l -> new AtomicInteger()).incrementAndGet());
+        } finally {
+            counters.lock.readLock().unlock();
+        }
+
+        if (counters.pending.size() >= flushThreshold ||
+                System.currentTimeMillis() - counters.lastFlushTime >= flushIntervalMillis) {
+            // если другой поток уже сохраняет частоты сайта, текущий поток не ждет его завершения
+            if (counters.flushLock.tryLock()) {
+                try {
+                    flush(siteId, counters);
+                } finally {
+                    counters.flushLock.unlock();
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Writes accumulated frequencies of the site to the DB and stops aggregation for the site.
+     */
+    public void finishSite(int siteId) {
+        SiteLemmaCounters counters = sitesCounters.remove(siteId);
+        if (counters == null) {
+            return;
+        }
+        boolean isFlushed;
+        counters.flushLock.lock();
+        try {
+            isFlushed = flush(siteId, counters);
+        } finally {
+            counters.flushLock.unlock();
+        }
+        if (!isFlushed) {
+            log.warn("Частоты лемм сайта с id {} не сохранены и будут пересчитаны по таблице index", siteId);
+            try {
+                lemmaService.recalculateFrequencies(siteId);
+            } catch (RuntimeException e) {
+                log.error("Не удалось пересчитать частоты лемм сайта с id {}: {}", siteId, e.toString());
+            }
+        }
+    }
+
+
+    public void finishAllSites() {
+        new ArrayList<>(sitesCounters.keySet()).forEach(this::finishSite);
+    }
+
+
+    /**
+     * Must be called by the thread holding 'flushLock' of the counters.
+     *
+     * @return false, if the frequencies are not saved and are returned to the accumulated ones.
+     */
+    private boolean flush(int siteId, SiteLemmaCounters counters) {
+        Map<String, AtomicInteger> drained;
+        counters.lock.writeLock().lock();
+        try {
+            drained = counters.pending;
+            counters.pending = new ConcurrentHashMap<>();
+            counters.lastFlushTime = System.currentTimeMillis();
+        } finally {
+            counters.lock.writeLock().unlock();
+        }
+        if (drained.isEmpty()) {
+            return true;
+        }
+        Map<String, Integer> frequenciesDeltas = new HashMap<>(drained.size() * 2);
+        drained.forEach((lemma, delta) -> frequenciesDeltas.put(lemma, delta.get()));
+        log.debug("Сохранение частот {} лемм сайта с id {}", frequenciesDeltas.size(), siteId);
+        try {
+            lemmaService.increaseLemmasFrequencies(siteId, frequenciesDeltas);
+            return true;
+        } catch (RuntimeException e) {
+            // сохранение выполняется в одной транзакции, поэтому ни одна частота не изменена
+            counters.lock.readLock().lock();
+            try {
+                frequenciesDeltas.forEach((lemma, delta) ->
+                        counters.pending.computeIfAbsent(lemma, l -> new AtomicInteger()).addAndGet(delta));
+            } finally {
+                counters.lock.readLock().unlock();
+            }
+            return false;
+        }
+    }
+
+
+    private static class SiteLemmaCounters {
+
+        private final ReadWriteLock lock = new ReentrantReadWriteLock();
+        private final Lock flushLock = new ReentrantLock();
+        private volatile Map<String, AtomicInteger> pending = new ConcurrentHashMap<>();
+        private volatile long lastFlushTime = System.currentTimeMillis();
+
+    }
+
+}
@@ -0,0 +1,94 @@
+package searchengine.services.indexing;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import searchengine.services.crud.LemmaCRUDService;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps IDs of lemmas of the sites being indexed, so rows of table 'index' are created without lookups
+ * of lemmas. The cache of a site is warmed from the DB at the start of indexing and is filled by the path,
+ * which inserts new lemmas. IDs of lemmas absent in the cache are read from the DB with one query per page.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class LemmaIdCache {
+
+    private final LemmaCRUDService lemmaService;
+
+    private final Map<Integer, Map<String, Integer>> sitesLemmasIds = new ConcurrentHashMap<>();
+
+
+    public void startSite(int siteId) {
+        Map<String, Integer> lemmasIds = new ConcurrentHashMap<>(lemmaService.getAllIdsBySiteId(siteId));
+        sitesLemmasIds.put(siteId, lemmasIds);
+        log.debug("Загружено {} идентификаторов лемм сайта с id {}", lemmasIds.size(), siteId);
+    }
+
+
+    public void finishSite(int siteId) {
+        sitesLemmasIds.remove(siteId);
+    }
+
+
+    /**
+     * @return lemmas from param 'lemmas', which have no IDs in the cache of the site.
+     */
+    public List<String> getAbsentLemmas(int siteId, Collection<String> lemmas) {
+        Map<String, Integer> lemmasIds = sitesLemmasIds.get(siteId);
+        if (lemmasIds == null) {
+            return new ArrayList<>(lemmas);
+        }
+        List<String> absentLemmas = new ArrayList<>();
+        lemmas.forEach(lemma -> {
+            if (!lemmasIds.containsKey(lemma)) {
+                absentLemmas.add(lemma);
+            }
+        });
+        return absentLemmas;
+    }
+
+
+    /**
+     * Reads IDs of the lemmas, just inserted to the DB, and puts them to the cache of the site.
+     */
+    public void loadLemmas(int siteId, Collection<String> lemmas) {
+        Map<String, Integer> lemmasIds = sitesLemmasIds.get(siteId);
+        if (lemmasIds != null && !lemmas.isEmpty()) {
+            lemmasIds.putAll(lemmaService.getIdsBySiteIdAndLemmas(siteId, lemmas));
+        }
+    }
+
+
+    /**
+     * @return map where key is lemma and value is ID of the lemma. Lemmas absent in the DB are not included.
+     */
+    public Map<String, Integer> getIds(int siteId, Collection<String> lemmas) {
+        Map<String, Integer> lemmasIds = sitesLemmasIds.get(siteId);
+        if (lemmasIds == null) {
+            return lemmaService.getIdsBySiteIdAndLemmas(siteId, lemmas);
+        }
+
+        Map<String, Integer> result = new HashMap<>(lemmas.size() * 2);
+        List<String> absentLemmas = new ArrayList<>();
+        lemmas.forEach(lemma -> {
+            Integer id = lemmasIds.get(lemma);
+            if (id != null) {
+                result.put(lemma, id);
+            } else {
+                absentLemmas.add(lemma);
+            }
+        });
+        if (!absentLemmas.isEmpty()) {
+            Map<String, Integer> loadedIds = lemmaService.getIdsBySiteIdAndLemmas(siteId, absentLemmas);
+            lemmasIds.putAll(loadedIds);
+            result.putAll(loadedIds);
+        }
+        return result;
+    }
+
+}
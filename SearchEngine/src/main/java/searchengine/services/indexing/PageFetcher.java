@@ -0,0 +1,162 @@
+package searchengine.services.indexing;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import searchengine.config.IndexingSettings;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.Charset;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Downloads pages with non-blocking requests, so waiting for WEB-servers does not occupy threads.
+ */
+@Slf4j
+@Component
+public class PageFetcher {
+
+    private final HttpClient httpClient;
+    // исполнитель HTTP-клиента в режиме виртуальных потоков, иначе null
+    private final ExecutorService httpExecutor;
+    private final String userAgent;
+    private final Duration requestTimeout;
+
+    public PageFetcher(IndexingSettings indexingSettings) {
+        this.requestTimeout = Duration.ofSeconds(indexingSettings.getFetchTimeout());
+        this.userAgent = indexingSettings.getUserAgent();
+        HttpClient.Builder httpClientBuilder = HttpClient.newBuilder()
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .connectTimeout(requestTimeout);
+        this.httpExecutor = indexingSettings.isUseVirtualThreads() ? Executors.newVirtualThreadPerTaskExecutor() : null;
+        if (httpExecutor != null) {
+            httpClientBuilder.executor(httpExecutor);
+        }
+        this.httpClient = httpClientBuilder.build();
+    }
+
+
+    /**
+     * Closes the HTTP client and its executor at the shutdown of the application.
+     */
+    @PreDestroy
+    public void close() {
+        httpClient.shutdownNow();
+        if (httpExecutor != null) {
+            httpExecutor.shutdownNow();
+        }
+    }
+
+
+    /**
+     * @return future, completed with the fetched page, or with null, if the page could not be fetched.
+     * Body of a page is read only if the page has text content (see {@link PageIndexServiceImpl#TEXT_CONTENT_TYPES}).
+     */
+    public CompletableFuture<FetchedPage> fetch(String url, String referrer) {
+        return fetch(url, referrer, null);
+    }
+
+
+    /**
+     * Sends a conditional request with validators of the stored version of the page, so the server may answer
+     * 'Not Modified' without the body (see {@link FetchedPage#isNotModified()}).
+     *
+     * @param storedVersion version of the page, saved by a previous indexing, or null.
+     */
+    public CompletableFuture<FetchedPage> fetch(String url, String referrer, PageVersion storedVersion) {
+        HttpRequest request = buildRequest(url, referrer, "text/html,application/xhtml+xml;q=0.9,*/*;q=0.8",
+                storedVersion);
+        if (request == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        return httpClient.sendAsync(request, this::getBodySubscriber)
+                .handle((response, e) -> {
+                    if (e != null) {
+                        log.warn("Ошибка при открытии страницы {}: {}", url, e.toString());
+                        return null;
+                    }
+                    return new FetchedPage(response.uri().toString(), response.statusCode(),
+                            response.headers().firstValue("Content-Type").orElse(null), response.body(),
+                            getCharsetName(response.headers().firstValue("Content-Type").orElse("")),
+                            response.headers().firstValue("Retry-After").orElse(null),
+                            response.headers().firstValue("ETag").orElse(null),
+                            response.headers().firstValue("Last-Modified").orElse(null));
+                });
+    }
+
+
+    /**
+     * @return future, completed with the text of the file (for example, robots.txt),
+     * or with null, if the file could not be fetched.
+     */
+    public CompletableFuture<String> fetchText(String url) {
+        HttpRequest request = buildRequest(url, url, "text/plain", null);
+        if (request == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+                .handle((response, e) -> e != null || response.statusCode() != 200 ? null : response.body());
+    }
+
+
+    private HttpRequest buildRequest(String url, String referrer, String accept, PageVersion storedVersion) {
+        try {
+            HttpRequest.Builder requestBuilder = HttpRequest.newBuilder(URI.create(url))
+                    .timeout(requestTimeout)
+                    .header("User-Agent", userAgent)
+                    .header("Referer", referrer)
+                    .header("Accept", accept);
+            if (storedVersion != null && storedVersion.etag() != null) {
+                requestBuilder.header("If-None-Match", storedVersion.etag());
+            }
+            if (storedVersion != null && storedVersion.lastModified() != null) {
+                requestBuilder.header("If-Modified-Since", storedVersion.lastModified());
+            }
+            return requestBuilder.GET().build();
+        } catch (IllegalArgumentException e) {
+            log.debug("Некорректный адрес страницы {}: {}", url, e.toString());
+            return null;
+        }
+    }
+
+
+    /**
+     * The body is received as bytes and decoded at parsing (see {@link FetchedPage#parseBody()}),
+     * as the charset may be declared only in tag 'meta' of the page.
+     */
+    private HttpResponse.BodySubscriber<byte[]> getBodySubscriber(HttpResponse.ResponseInfo responseInfo) {
+        String contentType = responseInfo.headers().firstValue("Content-Type").orElse("");
+        if (!PageIndexServiceImpl.hasAcceptedContent(contentType)) {
+            return HttpResponse.BodySubscribers.replacing(null);
+        }
+        return HttpResponse.BodySubscribers.ofByteArray();
+    }
+
+
+    /**
+     * @return name of the charset from header 'Content-Type' or null, if the charset is absent or unknown.
+     */
+    private static String getCharsetName(String contentType) {
+        int charsetIdx = contentType.toLowerCase().indexOf("charset=");
+        if (charsetIdx < 0) {
+            return null;
+        }
+        String charsetName = contentType.substring(charsetIdx + "charset=".length()).split(";")[0]
+                .replace("\"", "").trim();
+        try {
+            return Charset.isSupported(charsetName) ? charsetName : null;
+        } catch (IllegalArgumentException e) {
+            log.debug("Неизвестная кодировка страницы: {}", charsetName);
+            return null;
+        }
+    }
+
+}
@@ -5,16 +5,63 @@ import searchengine.config.IndexingSettings;
 import searchengine.model.SiteEntity;
 import searchengine.services.ResultMessage;
 
+import java.util.BitSet;
+import java.util.Map;
+import java.util.function.Consumer;
+
 public interface PageIndexService {
 
     void indexAndSavePage(SiteEntity siteEntity, String path, Document htmlDoc);
 
     void indexAndSaveSinglePage(SiteEntity siteEntity, String path, Document htmlDoc);
 
+    /**
+     * Saves the page, its lemmas and indexes, if the page is absent in the DB.
+     *
+     * @param pageText             title and plain text of the page, saved for snippets of search results.
+     * @param lemmasMentionsOnPage map where key is lemma and value is number of the lemma mentions on the page.
+     * @return ID of the saved page or 0, if the page with the path is already saved.
+     */
+    int saveIndexedPage(SiteEntity siteEntity, String path, int responseCode, String content, PageText pageText,
+                         PageVersion version, Map<String, Integer> lemmasMentionsOnPage);
+
+    /**
+     * Replaces content of the saved page and its indexes. Frequencies of lemmas are changed only for lemmas,
+     * which have appeared on the page or have disappeared from it.
+     *
+     * @param pageText             title and plain text of the page, saved for snippets of search results.
+     * @param lemmasMentionsOnPage map where key is lemma and value is number of the lemma mentions on the page.
+     */
+    void updateIndexedPage(SiteEntity siteEntity, int pageId, int responseCode, String content, PageText pageText,
+                           PageVersion version, Map<String, Integer> lemmasMentionsOnPage);
+
+    void updatePageVersion(int pageId, PageVersion version);
+
+    /**
+     * @return page saved to the DB or null, if the site has no page with the path.
+     */
+    StoredPage getStoredPage(SiteEntity siteEntity, String path);
+
+    String getPageContent(int pageId);
+
+    /**
+     * Deletes pages of the site with IDs not greater than 'lastPageId', which are absent in 'keptPagesIds',
+     * with their indexes, and updates frequencies of lemmas and the inverted index of the site.
+     */
+    void deletePagesExcept(SiteEntity siteEntity, BitSet keptPagesIds, int lastPageId);
+
+    /**
+     * @return title and plain text of the page with numbers of mentions of lemmas on the page
+     * and positions of lemmas in the text.
+     */
+    PageText getPageText(Document htmlDoc);
+
     Document getHtmlDocument(String url, String userAgent, String referrer);
 
     ResultMessage checkHTMLDocument(Document htmlDoc);
 
+    ResultMessage checkFetchedPage(FetchedPage fetchedPage);
+
     /**
      * @throws RuntimeException if path to long or url has no content
      */
@@ -22,4 +69,16 @@ public interface PageIndexService {
 
     boolean pageIsPresentInDB(SiteEntity siteEntity, String path);
 
+    int getPagesCount(SiteEntity siteEntity);
+
+    /**
+     * @return max ID of the pages of the site or 0, if the site has no pages.
+     */
+    int getLastPageId(SiteEntity siteEntity);
+
+    /**
+     * Reads paths of all pages of the site without loading them to memory at once.
+     */
+    void forEachPagePath(SiteEntity siteEntity, Consumer<String> action);
+
 }
@@ -1,22 +1,24 @@
 package searchengine.services.indexing;
 
 import lombok.extern.slf4j.Slf4j;
+import org.jsoup.Connection;
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.UnexpectedRollbackException;
 import searchengine.config.IndexingSettings;
-import searchengine.model.IndexEntity;
-import searchengine.model.LemmaEntity;
 import searchengine.model.PageEntity;
 import searchengine.model.SiteEntity;
+import searchengine.repositories.PageRepository;
 import searchengine.services.ResultMessage;
 import searchengine.services.crud.IndexCRUDService;
 import searchengine.services.crud.LemmaCRUDService;
 import searchengine.services.crud.PageCRUDService;
+import searchengine.services.invertedindex.InvertedIndexService;
+import searchengine.services.invertedindex.PositionsCodec;
 import searchengine.services.morphology.MorphologyService;
 
 import java.util.*;
+import java.util.function.Consumer;
 
 @Service
 @Slf4j
@@ -31,33 +33,134 @@ public class PageIndexServiceImpl implements PageIndexService {
                     ".docx", ".xlsx", ".pptx", ".doc", ".xls", ".ppt", ".odt", ".odf", ".odp", ".pdf"
             };
 
+    private static final int INITIAL_POSITIONS_CAPACITY = 4;
+
     private final PageCRUDService pageService;
     private final LemmaCRUDService lemmaService;
     private final IndexCRUDService indexService;
     private final MorphologyService morphologyService;
+    private final InvertedIndexService invertedIndexService;
+    private final LemmaFrequencyAggregator lemmaFrequencyAggregator;
+    private final LemmaIdCache lemmaIdCache;
 
     public PageIndexServiceImpl(PageCRUDService pageService,
                                 LemmaCRUDService lemmaService,
                                 IndexCRUDService indexService,
-                                MorphologyService morphologyService) {
+                                MorphologyService morphologyService,
+                                InvertedIndexService invertedIndexService,
+                                LemmaFrequencyAggregator lemmaFrequencyAggregator,
+                                LemmaIdCache lemmaIdCache) {
         this.pageService = pageService;
         this.lemmaService = lemmaService;
         this.indexService = indexService;
         this.morphologyService = morphologyService;
+        this.invertedIndexService = invertedIndexService;
+        this.lemmaFrequencyAggregator = lemmaFrequencyAggregator;
+        this.lemmaIdCache = lemmaIdCache;
     }
 
     public void indexAndSavePage(SiteEntity siteEntity, String path, Document htmlDoc) {
-        PageEntity pageEntity = savePage(siteEntity, path, htmlDoc);
+        Connection.Response response = htmlDoc.connection().response();
+        PageVersion version = new PageVersion(PageVersion.hashText(htmlDoc.body().text()),
+                response.header("ETag"), response.header("Last-Modified"));
+        PageText pageText = getPageText(htmlDoc);
+        saveIndexedPage(siteEntity, path, response.statusCode(), htmlDoc.toString(), pageText, version,
+                pageText.lemmasMentions());
+    }
+
+
+    @Override
+    public int saveIndexedPage(SiteEntity siteEntity, String path, int responseCode, String content, PageText pageText,
+                               PageVersion version, Map<String, Integer> lemmasMentionsOnPage) {
+        PageEntity newPageEntity = new PageEntity(siteEntity, path, responseCode, content);
+        newPageEntity.setTitle(pageText.title());
+        newPageEntity.setPlainText(pageText.text());
+        newPageEntity.setTextHash(version.textHash());
+        newPageEntity.setEtag(version.etag());
+        newPageEntity.setLastModified(version.lastModified());
+        PageEntity pageEntity = pageService.save(newPageEntity);
         if (pageEntity.getId() == null) {
-            return;
+            return 0;
         } // Если объект не связался с персистент контекстом, значит он уже есть в БД
 
-        Map<String, Integer> lemmasMentionsOnPage = getLemmasMentionsOnPage(htmlDoc);
-        Set<String> lemmas = lemmasMentionsOnPage.keySet();
+        saveLemmas(siteEntity.getId(), lemmasMentionsOnPage.keySet());
+
+        saveIndexes(siteEntity.getId(), pageEntity.getId(), lemmasMentionsOnPage, pageText.lemmasPositions());
+
+        invertedIndexService.addPage(
+                siteEntity.getId(), pageEntity.getId(), lemmasMentionsOnPage, pageText.lemmasPositions());
+        return pageEntity.getId();
+    }
+
+
+    @Override
+    public void updateIndexedPage(SiteEntity siteEntity, int pageId, int responseCode, String content, PageText pageText,
+                                  PageVersion version, Map<String, Integer> lemmasMentionsOnPage) {
+        Set<String> oldPageLemmas = new HashSet<>(indexService.getLemmasByPageId(pageId));
+        indexService.deleteByPageId(pageId);
+        // страница удаляется из индекса в памяти вместе со строками таблицы, на случай ошибки сохранения новых
+        invertedIndexService.removePage(siteEntity.getId(), pageId, oldPageLemmas);
+        pageService.updateContentById(pageId, responseCode, content, pageText.title(), pageText.text(),
+                version.textHash(), version.etag(), version.lastModified());
+
+        Map<String, Integer> frequenciesDeltas = new HashMap<>();
+        oldPageLemmas.stream()
+                .filter(lemma -> !lemmasMentionsOnPage.containsKey(lemma))
+                .forEach(lemma -> frequenciesDeltas.put(lemma, -1));
+        if (!frequenciesDeltas.isEmpty()) {
+            lemmaService.increaseLemmasFrequencies(siteEntity.getId(), frequenciesDeltas);
+        }
+        List<String> newLemmas = lemmasMentionsOnPage.keySet().stream()
+                .filter(lemma -> !oldPageLemmas.contains(lemma))
+                .toList();
+        if (!newLemmas.isEmpty()) {
+            saveLemmas(siteEntity.getId(), newLemmas);
+        }
+
+        saveIndexes(siteEntity.getId(), pageId, lemmasMentionsOnPage, pageText.lemmasPositions());
+
+        invertedIndexService.addPage(siteEntity.getId(), pageId, lemmasMentionsOnPage, pageText.lemmasPositions());
+    }
+
+
+    @Override
+    public void updatePageVersion(int pageId, PageVersion version) {
+        pageService.updateVersionById(pageId, version.textHash(), version.etag(), version.lastModified());
+    }
+
+
+    @Override
+    public StoredPage getStoredPage(SiteEntity siteEntity, String path) {
+        PageRepository.PageVersionRow row = pageService.getVersionBySiteAndPath(siteEntity, path);
+        if (row == null) {
+            return null;
+        }
+        long textHash = row.getTextHash() == null ? 0 : row.getTextHash();
+        return new StoredPage(row.getId(), new PageVersion(textHash, row.getEtag(), row.getLastModified()));
+    }
+
+
+    @Override
+    public String getPageContent(int pageId) {
+        return pageService.getContentById(pageId);
+    }
 
-        saveLemmas(siteEntity.getId(), lemmas);
 
-        saveIndexes(siteEntity, pageEntity, lemmasMentionsOnPage);
+    @Override
+    public void deletePagesExcept(SiteEntity siteEntity, BitSet keptPagesIds, int lastPageId) {
+        List<Integer> deletedPagesIds = new ArrayList<>();
+        pageService.forEachIdBySiteEntity(siteEntity, id -> {
+            if (id <= lastPageId && !keptPagesIds.get(id)) {
+                deletedPagesIds.add(id);
+            }
+        });
+        if (deletedPagesIds.isEmpty()) {
+            return;
+        }
+        log.info("Удаление {} страниц, которые больше не найдены на сайте {}", deletedPagesIds.size(), siteEntity.getUrl());
+        pageService.deleteByIds(deletedPagesIds);
+        lemmaService.recalculateFrequencies(siteEntity.getId());
+        invertedIndexService.reloadSite(siteEntity);
     }
 
 
@@ -65,51 +168,47 @@ public class PageIndexServiceImpl implements PageIndexService {
     public void indexAndSaveSinglePage(SiteEntity siteEntity, String path, Document htmlDoc) {
         PageEntity oldPageEntity = pageService.getBySiteAndPath(siteEntity, path);
         if (oldPageEntity != null) {
-            Document oldHtmlDoc = Jsoup.parse(oldPageEntity.getContent());
+            Document oldHtmlDoc = Jsoup.parse(pageService.getContentById(oldPageEntity.getId()));
             String oldPageText = oldHtmlDoc.body().text();
             Set<String> oldPageLemmas = morphologyService.getUniqueLemmasFromText(oldPageText);
             pageService.deleteById(oldPageEntity.getId());
             lemmaService.decreaseLemmasFrequenciesByOne(siteEntity, oldPageLemmas);
+            invertedIndexService.removePage(siteEntity.getId(), oldPageEntity.getId(), oldPageLemmas);
         }
         indexAndSavePage(siteEntity, path, htmlDoc);
     }
 
 
-    private PageEntity savePage(SiteEntity siteEntity, String path, Document htmlDoc) {
-        int responseCode = htmlDoc.connection().response().statusCode();
-        String htmlPage = htmlDoc.toString();
-        PageEntity pageEntity = new PageEntity(siteEntity, path, responseCode, htmlPage);
-        return pageService.save(pageEntity);
-    }
-
-
-    private void saveLemmas(Integer siteId, Iterable<String> lemmas) {
-//        1) Вариант с дедлоками, более производительный.
-        while (true) {
-            try {
-                lemmaService.saveOrUpdateLemmas(siteId, lemmas);
-                break;
-            } catch (UnexpectedRollbackException e) {
-                log.warn("Restart transaction: save lemmas, due to the error: {}", e.toString());
-            }
+    private void saveLemmas(Integer siteId, Collection<String> lemmas) {
+        if (lemmaFrequencyAggregator.isAggregating(siteId)) {
+            lemmaFrequencyAggregator.addLemmas(siteId, lemmas);
+        } else {
+            lemmaService.saveOrUpdateLemmas(siteId, lemmas);
         }
-//        2) Вариант без дедлоков, более медленный.
-//        Если использовать этот метод, то также пропадают дэдлоки в методе indexService.saveAll(indexEntities)
-//        lemmaService.saveOrUpdateLemmasWithoutDeadLocks(siteId, lemmas);
     }
 
 
-    private void saveIndexes(SiteEntity siteEntity, PageEntity pageEntity, Map<String, Integer> lemmasMentionsOnPage) {
-        List<IndexEntity> indexEntities = new LinkedList<>();
-        Set<String> lemmas = lemmasMentionsOnPage.keySet();
-        Map<String, LemmaEntity> lemmaEntities = lemmaService.getAllToMapBySiteAndLemmas(siteEntity, lemmas);
+    /**
+     * @param lemmasPositions encoded positions of lemmas in the plain text of the page.
+     *                        Lemmas, which occur only in headers and footers, have no positions.
+     */
+    private void saveIndexes(Integer siteId, Integer pageId, Map<String, Integer> lemmasMentionsOnPage,
+                             Map<String, byte[]> lemmasPositions) {
+        Map<String, Integer> lemmasIds = lemmaIdCache.getIds(siteId, lemmasMentionsOnPage.keySet());
 
+        Map<Integer, Integer> lemmaIdsRanks = new HashMap<>();
+        Map<Integer, byte[]> lemmaIdsPositions = new HashMap<>();
         lemmasMentionsOnPage.forEach((lemma, rank) -> {
-            LemmaEntity lemmaEntity = lemmaEntities.get(lemma);
-            IndexEntity indexEntity = new IndexEntity(pageEntity, lemmaEntity, rank);
-            indexEntities.add(indexEntity);
+            Integer lemmaId = lemmasIds.get(lemma);
+            if (lemmaId != null) {
+                lemmaIdsRanks.put(lemmaId, rank);
+                byte[] positions = lemmasPositions.get(lemma);
+                if (positions != null) {
+                    lemmaIdsPositions.put(lemmaId, positions);
+                }
+            }
         });
-        indexService.saveAll(indexEntities);
+        indexService.saveAll(siteId, pageId, lemmaIdsRanks, lemmaIdsPositions);
     }
 
 
@@ -119,6 +218,24 @@ public class PageIndexServiceImpl implements PageIndexService {
     }
 
 
+    @Override
+    public int getPagesCount(SiteEntity siteEntity) {
+        return pageService.getCountBySiteEntity(siteEntity);
+    }
+
+
+    @Override
+    public int getLastPageId(SiteEntity siteEntity) {
+        return pageService.getMaxIdBySiteEntity(siteEntity);
+    }
+
+
+    @Override
+    public void forEachPagePath(SiteEntity siteEntity, Consumer<String> action) {
+        pageService.forEachPathBySiteEntity(siteEntity, action);
+    }
+
+
     @Override
     public Document getHtmlDocument(String url, String userAgent, String referrer) {
         Document htmlDoc = null;
@@ -131,6 +248,18 @@ public class PageIndexServiceImpl implements PageIndexService {
     }
 
 
+    @Override
+    public ResultMessage checkFetchedPage(FetchedPage fetchedPage) {
+        if (fetchedPage == null || !isSuccessfulCode(fetchedPage.getStatusCode())) {
+            return ResultMessage.PAGE_NOT_FOUND;
+        }
+        if (!hasAcceptedContent(fetchedPage.getContentType()) || fetchedPage.getBody() == null) {
+            return ResultMessage.URL_HAS_NO_TEXT_CONTENT;
+        }
+        return ResultMessage.PAGE_IS_CHECKED;
+    }
+
+
     @Override
     public ResultMessage checkHTMLDocument(Document htmlDoc) {
         if (htmlDoc == null) {
@@ -197,9 +326,25 @@ public class PageIndexServiceImpl implements PageIndexService {
     }
 
 
-    private Map<String, Integer> getLemmasMentionsOnPage(Document htmlDoc) {
-        String text = htmlDoc.body().text();
-        return morphologyService.getMapOfLemmasMentions(text);
+    /**
+     * The text of the page is lemmatized once: numbers of mentions of lemmas are counted by their positions.
+     * Headers and footers are not included in the text, but their lemmas are counted in the numbers of mentions.
+     */
+    @Override
+    public PageText getPageText(Document htmlDoc) {
+        StringBuilder excludedText = new StringBuilder();
+        PageText pageText = PageText.of(htmlDoc, excludedText);
+        Map<String, Occurrences> lemmasOccurrences = new HashMap<>();
+        morphologyService.forEachLemmaOccurrence(pageText.text(), (lemma, position, offset) ->
+                lemmasOccurrences.computeIfAbsent(lemma, l -> new Occurrences()).add(position, offset));
+        Map<String, Integer> lemmasMentions = excludedText.isEmpty() ?
+                new HashMap<>() : new HashMap<>(morphologyService.getMapOfLemmasMentions(excludedText.toString()));
+        Map<String, byte[]> lemmasPositions = new HashMap<>();
+        lemmasOccurrences.forEach((lemma, occurrences) -> {
+            lemmasPositions.put(lemma, occurrences.encode());
+            lemmasMentions.merge(lemma, occurrences.size, Integer::sum);
+        });
+        return pageText.withLemmas(lemmasMentions, lemmasPositions);
     }
 
 
@@ -215,10 +360,12 @@ public class PageIndexServiceImpl implements PageIndexService {
     }
 
 
-    private boolean hasAcceptedContent(String contentType) {
+    static boolean hasAcceptedContent(String contentType) {
+        if (contentType == null) {
+            return false;
+        }
         boolean hasAcceptedContent = false;
         for (String s : TEXT_CONTENT_TYPES) {
-            assert contentType != null;
             if (contentType.startsWith(s)) {
                 hasAcceptedContent = true;
                 break;
@@ -239,4 +386,27 @@ public class PageIndexServiceImpl implements PageIndexService {
         return isRejectedPath;
     }
 
+
+    private static final class Occurrences {
+
+        private int[] positions = new int[INITIAL_POSITIONS_CAPACITY];
+        private int[] offsets = new int[INITIAL_POSITIONS_CAPACITY];
+        private int size;
+
+        void add(int position, int offset) {
+            if (size == positions.length) {
+                positions = Arrays.copyOf(positions, size * 2);
+                offsets = Arrays.copyOf(offsets, size * 2);
+            }
+            positions[size] = position;
+            offsets[size] = offset;
+            size++;
+        }
+
+        byte[] encode() {
+            return PositionsCodec.encode(positions, offsets, size);
+        }
+
+    }
+
 }
@@ -0,0 +1,120 @@
+package searchengine.services.indexing;
+
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.nodes.Node;
+import org.jsoup.nodes.TextNode;
+import org.jsoup.select.NodeFilter;
+import org.jsoup.select.NodeTraversor;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Title and plain text of a page, which are extracted once at indexing and saved to the DB,
+ * so snippets of search results are built without parsing HTML.
+ *
+ * @param text            text of the page body without headers and footers.
+ *                        Text of every block element is on a separate line.
+ * @param lemmasMentions  map where key is lemma and value is number of the lemma mentions in the page body,
+ *                        including headers and footers.
+ * @param lemmasPositions map where key is lemma and value is its occurrences in the text,
+ *                        encoded with {@link searchengine.services.invertedindex.PositionsCodec}.
+ */
+public record PageText(String title, String text, Map<String, Integer> lemmasMentions,
+                       Map<String, byte[]> lemmasPositions) {
+
+    // 512 - длина поля title таблицы page
+    public static final int MAX_TITLE_LENGTH = 512;
+
+    private static final Set<String> EXCLUDED_TAGS = Set.of("header", "footer");
+
+    /**
+     * @return title and text of the page without lemmas.
+     */
+    public static PageText of(Document htmlDoc) {
+        return of(htmlDoc, new StringBuilder());
+    }
+
+
+    /**
+     * @param excludedText text of headers and footers, which are excluded from the text of the page,
+     *                     is appended to this param.
+     * @return title and text of the page without lemmas.
+     */
+    public static PageText of(Document htmlDoc, StringBuilder excludedText) {
+        String title = htmlDoc.title();
+        if (title.length() > MAX_TITLE_LENGTH) {
+            title = title.substring(0, MAX_TITLE_LENGTH);
+        }
+        return new PageText(title, extractText(htmlDoc.body(), excludedText), Map.of(), Map.of());
+    }
+
+
+    public PageText withLemmas(Map<String, Integer> lemmasMentions, Map<String, byte[]> lemmasPositions) {
+        return new PageText(title, text, lemmasMentions, lemmasPositions);
+    }
+
+
+    private static String extractText(Element body, StringBuilder excludedText) {
+        StringBuilder text = new StringBuilder();
+        NodeTraversor.filter(new NodeFilter() {
+            @Override
+            public FilterResult head(Node node, int depth) {
+                if (node instanceof TextNode textNode) {
+                    appendWords(text, textNode.getWholeText());
+                } else if (node instanceof Element element) {
+                    if (EXCLUDED_TAGS.contains(element.normalName())) {
+                        excludedText.append(element.text()).append('\n');
+                        return FilterResult.SKIP_ENTIRELY;
+                    }
+                    if (element.isBlock() || element.normalName().equals("br")) {
+                        appendLineBreak(text);
+                    }
+                }
+                return FilterResult.CONTINUE;
+            }
+
+            @Override
+            public FilterResult tail(Node node, int depth) {
+                if (node instanceof Element element && element.isBlock()) {
+                    appendLineBreak(text);
+                }
+                return FilterResult.CONTINUE;
+            }
+        }, body);
+        int length = text.length();
+        while (length > 0 && Character.isWhitespace(text.charAt(length - 1))) {
+            length--;
+        }
+        text.setLength(length);
+        return text.toString();
+    }
+
+
+    /**
+     * Appends the words of the text, replacing any whitespaces between them with one space.
+     */
+    private static void appendWords(StringBuilder text, String words) {
+        for (int i = 0; i < words.length(); i++) {
+            char c = words.charAt(i);
+            if (!Character.isWhitespace(c) && c != '\u00A0') {
+                text.append(c);
+            } else if (!text.isEmpty() && !Character.isWhitespace(text.charAt(text.length() - 1))) {
+                text.append(' ');
+            }
+        }
+    }
+
+
+    private static void appendLineBreak(StringBuilder text) {
+        int length = text.length();
+        if (length > 0 && text.charAt(length - 1) == ' ') {
+            text.setLength(--length);
+        }
+        if (length > 0 && text.charAt(length - 1) != '\n') {
+            text.append('\n');
+        }
+    }
+
+}
@@ -0,0 +1,26 @@
+package searchengine.services.indexing;
+
+import java.util.Objects;
+
+/**
+ * Version of a page, by which incremental indexing decides whether the page has changed.
+ *
+ * @param textHash     hash of the page text; changes of markup, which do not change the text, do not change the hash.
+ * @param etag         value of response header 'ETag' or null.
+ * @param lastModified value of response header 'Last-Modified' or null.
+ */
+public record PageVersion(long textHash, String etag, String lastModified) {
+
+    public static long hashText(String text) {
+        return Hash64.of(text);
+    }
+
+
+    /**
+     * @return true, if the validators of the versions differ, so the stored validators should be updated.
+     */
+    public boolean hasOtherValidators(PageVersion version) {
+        return !Objects.equals(etag, version.etag) || !Objects.equals(lastModified, version.lastModified);
+    }
+
+}
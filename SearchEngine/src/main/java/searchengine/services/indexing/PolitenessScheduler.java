@@ -0,0 +1,187 @@
+package searchengine.services.indexing;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import searchengine.config.IndexingSettings;
+
+import java.net.URI;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Admits requests to every host at the rate, allowed for the host: one request per 'request-timeout' milliseconds
+ * (param in settings-file) or per 'Crawl-delay' from robots.txt of the site, if it is longer, with bursts of up to
+ * 'request-burst' requests. On responses 429 and 503 requests to the host are slowed down and suspended
+ * for the time from header 'Retry-After'.
+ */
+@Slf4j
+@Component
+public class PolitenessScheduler {
+
+    private final IndexingSettings indexingSettings;
+    private final Map<String, HostRateLimiter> hostsLimiters = new ConcurrentHashMap<>();
+
+    public PolitenessScheduler(IndexingSettings indexingSettings) {
+        this.indexingSettings = indexingSettings;
+    }
+
+
+    /**
+     * Creates the rate limiter of the site host. Is called at the start of the site indexing.
+     *
+     * @param robotsTxt content of robots.txt of the site or null, if the site has no robots.txt.
+     */
+    public void registerSite(String siteUrl, String robotsTxt) {
+        long intervalMillis = indexingSettings.getRequestTimeout();
+        if (indexingSettings.isRespectCrawlDelay() && robotsTxt != null) {
+            double crawlDelay = getCrawlDelay(robotsTxt, indexingSettings.getUserAgent());
+            if (crawlDelay > 0) {
+                log.info("Сайт {} задает в robots.txt интервал между запросами {} с", siteUrl, crawlDelay);
+                intervalMillis = Math.max(intervalMillis,
+                        Math.min((long) (crawlDelay * 1000), HostRateLimiter.MAX_INTERVAL_MILLIS));
+            }
+        }
+        hostsLimiters.put(getHost(siteUrl), new HostRateLimiter(intervalMillis, indexingSettings.getRequestBurst()));
+    }
+
+
+    /**
+     * Removes rate limiters of all hosts. Is called when the indexing is finished, so limiters of the hosts,
+     * met by the indexing, are not kept until the next one.
+     */
+    public void clear() {
+        hostsLimiters.clear();
+    }
+
+
+    /**
+     * @return delay in milliseconds, after which the request to the URL may be started.
+     */
+    public long reserveDelay(String url) {
+        long now = System.currentTimeMillis();
+        return Math.max(getLimiter(url).reserve(now) - now, 0);
+    }
+
+
+    /**
+     * Adapts the rate of requests to the host of the URL to the response status.
+     *
+     * @param retryAfter value of header 'Retry-After' of the response or null.
+     */
+    public void onResponse(String url, int statusCode, String retryAfter) {
+        HostRateLimiter limiter = getLimiter(url);
+        if (isOverloadStatus(statusCode)) {
+            limiter.slowDown(System.currentTimeMillis(), parseRetryAfter(retryAfter));
+            log.warn("Сайт {} ответил кодом {}, интервал между запросами увеличен до {} мс",
+                    getHost(url), statusCode, limiter.getIntervalMillis());
+        } else {
+            limiter.speedUp();
+        }
+    }
+
+
+    static boolean isOverloadStatus(int statusCode) {
+        return statusCode == 429 || statusCode == 503;
+    }
+
+
+    private HostRateLimiter getLimiter(String url) {
+        return hostsLimiters.computeIfAbsent(getHost(url), host ->
+                new HostRateLimiter(indexingSettings.getRequestTimeout(), indexingSettings.getRequestBurst()));
+    }
+
+
+    private static String getHost(String url) {
+        try {
+            String authority = URI.create(url).getAuthority();
+            return authority == null ? url : authority.toLowerCase();
+        } catch (IllegalArgumentException e) {
+            return url;
+        }
+    }
+
+
+    /**
+     * @return value of directive 'Crawl-delay' in seconds from the group of robots.txt for the user agent
+     * or, if there is no such group, for all user agents ('*'); 0 if the directive is absent.
+     */
+    static double getCrawlDelay(String robotsTxt, String userAgent) {
+        String lowerCaseUserAgent = userAgent.toLowerCase();
+        double commonCrawlDelay = 0;
+        double userAgentCrawlDelay = -1;
+        boolean isCommonGroup = false;
+        boolean isUserAgentGroup = false;
+        boolean isGroupStarted = false; // идущие подряд строки User-agent относятся к одной группе
+
+        for (String line : robotsTxt.split("\\R")) {
+            int commentIdx = line.indexOf('#');
+            if (commentIdx >= 0) {
+                line = line.substring(0, commentIdx);
+            }
+            int colonIdx = line.indexOf(':');
+            if (colonIdx < 0) {
+                continue;
+            }
+            String field = line.substring(0, colonIdx).trim().toLowerCase();
+            String value = line.substring(colonIdx + 1).trim();
+
+            if (field.equals("user-agent")) {
+                if (!isGroupStarted) {
+                    isCommonGroup = false;
+                    isUserAgentGroup = false;
+                    isGroupStarted = true;
+                }
+                String agent = value.toLowerCase();
+                if (agent.equals("*")) {
+                    isCommonGroup = true;
+                } else if (!agent.isEmpty() && lowerCaseUserAgent.contains(agent)) {
+                    isUserAgentGroup = true;
+                }
+                continue;
+            }
+            isGroupStarted = false;
+            if (field.equals("crawl-delay")) {
+                double crawlDelay;
+                try {
+                    crawlDelay = Double.parseDouble(value);
+                } catch (NumberFormatException e) {
+                    continue;
+                }
+                if (isUserAgentGroup) {
+                    userAgentCrawlDelay = crawlDelay;
+                } else if (isCommonGroup) {
+                    commonCrawlDelay = crawlDelay;
+                }
+            }
+        }
+        return userAgentCrawlDelay >= 0 ? userAgentCrawlDelay : commonCrawlDelay;
+    }
+
+
+    /**
+     * @param retryAfter number of seconds or HTTP-date.
+     * @return delay in milliseconds or 0 if the value is absent or invalid.
+     */
+    static long parseRetryAfter(String retryAfter) {
+        if (retryAfter == null || retryAfter.isBlank()) {
+            return 0;
+        }
+        try {
+            return Math.min(Long.parseLong(retryAfter.trim()) * 1000, HostRateLimiter.MAX_INTERVAL_MILLIS * 5);
+        } catch (NumberFormatException e) {
+            // значение задано датой
+        }
+        try {
+            ZonedDateTime date = ZonedDateTime.parse(retryAfter.trim(),
+                    DateTimeFormatter.RFC_1123_DATE_TIME.withLocale(Locale.ENGLISH));
+            long delay = date.toInstant().toEpochMilli() - System.currentTimeMillis();
+            return Math.min(Math.max(delay, 0), HostRateLimiter.MAX_INTERVAL_MILLIS * 5);
+        } catch (RuntimeException e) {
+            return 0;
+        }
+    }
+
+}
@@ -0,0 +1,643 @@
+package searchengine.services.indexing;
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import searchengine.config.IndexingSettings;
+import searchengine.model.SiteEntity;
+import searchengine.services.ResultMessage;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Crawls a site with a pipeline of three stages:
+ * fetching of pages with non-blocking HTTP requests (see {@link PageFetcher}) or, if param 'use-virtual-threads'
+ * in settings-file is true, with blocking requests in virtual threads,
+ * parsing and lemmatization of fetched pages in 'parseExecutor' (CPU-bound work),
+ * saving of pages, lemmas and indexes to the DB in 'writeExecutor'.
+ * Links found on a page are put to the frontier, from which new fetches are started. The frontier is a priority
+ * queue by depth of pages, so the site is crawled breadth-first; the depth and the number of crawled pages
+ * are limited by params 'max-depth' and 'max-pages' in settings-file.
+ * Start times of requests are set by {@link PolitenessScheduler}; pages, for which the site answered
+ * 'Too Many Requests' or 'Service Unavailable', are requested again, up to 'MAX_FETCH_ATTEMPTS' times.
+ * Not more than 'max-pages-in-progress' pages of the site (param in settings-file) are in the pipeline
+ * at the same time, so the memory held by fetched pages is bounded. In the virtual threads mode the number
+ * of fetches of all sites is also limited by param 'max-concurrent-fetches'.
+ * Every 'checkpoint-interval' seconds (param in settings-file) links of the frontier and of pages in progress
+ * are saved to a {@link CrawlCheckpoint}, from which the crawl is resumed after a stop or a restart.
+ * In the incremental mode pages saved by a previous indexing are requested with validators of their versions;
+ * links of pages, which are not modified, are read from the saved content, and only pages, whose text has changed,
+ * are lemmatized again. After the crawl pages, which were not met, are deleted (see {@link #deleteVanishedPages()}).
+ */
+@Slf4j
+public class SiteCrawler {
+
+    private static final int MAX_FETCH_ATTEMPTS = 3;
+
+    @Setter
+    private static volatile boolean stoppingIndexing = false;
+
+    private final SiteEntity siteEntity;
+    @Getter
+    private final String siteUrl;
+    private final PageIndexService pageIndexService;
+    private final PageFetcher pageFetcher;
+    private final PolitenessScheduler politenessScheduler;
+    private final CrawlCheckpointStore checkpointStore;
+    private final IndexingSettings indexingSettings;
+    private final CrawlExecutors executors;
+    private final VisitedPages visitedPages;
+    private final String linksSelector;
+    private final boolean isIncremental;
+
+    private final Queue<PageLink> frontier = new PriorityBlockingQueue<>(64, Comparator.comparingInt(PageLink::depth));
+    // страницы, принятые к обходу, для ограничения 'max-pages'
+    private final AtomicInteger acceptedPagesCount = new AtomicInteger();
+    // страницы в очереди и в обработке; когда счетчик обнуляется, обход сайта завершен
+    private final AtomicInteger pendingPagesCount = new AtomicInteger();
+    private final Semaphore pagesInProgressPermits;
+    private final CompletableFuture<Void> crawlCompletion = new CompletableFuture<>();
+
+    // страницы, взятые из очереди и еще не завершенные; сохраняются в контрольной точке вместе с очередью
+    private final Map<String, PageLink> pagesInProgress = new ConcurrentHashMap<>();
+    // переходы страниц между очередью, обработкой и завершением не выполняются во время снимка контрольной точки
+    private final ReadWriteLock stateLock = new ReentrantReadWriteLock();
+    private final long checkpointIntervalMillis;
+    private final AtomicLong nextCheckpointTime;
+    private boolean isCheckpointingFinished = false;
+    // max ID страниц сайта в БД, чтобы не читать его из БД во время снимка контрольной точки
+    private final AtomicInteger lastSavedPageId = new AtomicInteger();
+
+    // ID сохраненных ранее страниц, которые встречены при инкрементальном обходе
+    private final BitSet seenPagesIds = new BitSet();
+    private int lastStoredPageId;
+
+    public SiteCrawler(SiteEntity siteEntity,
+                       PageIndexService pageIndexService,
+                       PageFetcher pageFetcher,
+                       PolitenessScheduler politenessScheduler,
+                       CrawlCheckpointStore checkpointStore,
+                       IndexingSettings indexingSettings,
+                       CrawlExecutors executors,
+                       boolean isIncremental) {
+        this.siteEntity = siteEntity;
+        this.siteUrl = siteEntity.getUrl();
+        this.pageIndexService = pageIndexService;
+        this.pageFetcher = pageFetcher;
+        this.politenessScheduler = politenessScheduler;
+        this.checkpointStore = checkpointStore;
+        this.indexingSettings = indexingSettings;
+        this.executors = executors;
+        this.isIncremental = isIncremental;
+        // при инкрементальном обходе наличие страницы в БД не означает, что она уже встречена
+        int checkVisitedPagesAlgorithm = isIncremental && indexingSettings.getCheckVisitedPagesAlgorithm() == 1 ?
+                2 : indexingSettings.getCheckVisitedPagesAlgorithm();
+        this.visitedPages = switch (checkVisitedPagesAlgorithm) {
+            case 0 -> new VisitedPagesSet();
+            case 2 -> new VisitedPagesHashSet(indexingSettings);
+            default -> new VisitedPagesInDB(pageIndexService, siteEntity, indexingSettings.isVisitedPagesBloomFilter() ?
+                    new BloomFilter(Math.max(indexingSettings.getVisitedPagesCapacity(), indexingSettings.getMaxPages())) :
+                    null);
+        };
+        this.linksSelector = "a[href^=/], a[href^=" + siteUrl + "]";
+        this.pagesInProgressPermits = new Semaphore(indexingSettings.getMaxPagesInProgress());
+        this.checkpointIntervalMillis = indexingSettings.getCheckpointInterval() * 1000L;
+        this.nextCheckpointTime = new AtomicLong(System.currentTimeMillis() + checkpointIntervalMillis);
+    }
+
+
+    /**
+     * Blocks the calling thread until the crawl is finished or stopped.
+     */
+    public ResultMessage crawl() {
+        if (stoppingIndexing) {
+            return ResultMessage.INDEXING_IS_CANCELED;
+        }
+
+        politenessScheduler.registerSite(siteUrl, pageFetcher.fetchText(siteUrl.concat("/robots.txt")).join());
+        if (isIncremental) {
+            lastStoredPageId = pageIndexService.getLastPageId(siteEntity);
+        } else if (checkpointIntervalMillis > 0) {
+            lastSavedPageId.set(pageIndexService.getLastPageId(siteEntity));
+        }
+
+        PageLink mainPageLink = new PageLink("/", indexingSettings.getReferrer(), 0, 1, lookUpStoredPage("/"));
+        FetchedPage mainPage = null;
+        for (int attempt = 1; attempt <= MAX_FETCH_ATTEMPTS && !stoppingIndexing; attempt++) {
+            mainPage = fetchBlocking(siteUrl.concat("/"), mainPageLink, null);
+            if (mainPage == null || !PolitenessScheduler.isOverloadStatus(mainPage.getStatusCode())) {
+                break;
+            }
+        }
+        ResultMessage resultMessage = mainPage != null && mainPage.isNotModified() ?
+                ResultMessage.PAGE_IS_CHECKED : pageIndexService.checkFetchedPage(mainPage);
+        if (resultMessage != ResultMessage.PAGE_IS_CHECKED) {
+            return resultMessage;
+        }
+
+        visitedPages.add(mainPageLink.path());
+        acceptedPagesCount.incrementAndGet();
+        pendingPagesCount.incrementAndGet();
+        pagesInProgressPermits.acquireUninterruptibly();
+        pagesInProgress.put(mainPageLink.path(), mainPageLink);
+        submitToParse(mainPageLink, mainPage);
+
+        return awaitCompletion();
+    }
+
+
+    /**
+     * Resumes the crawl from the checkpoint. Pages saved to the DB after the checkpoint must be deleted
+     * before the call. Paths of saved pages are considered visited, links of the checkpoint are put to the frontier.
+     * Blocks the calling thread until the crawl is finished or stopped.
+     */
+    public ResultMessage resume(CrawlCheckpoint checkpoint) {
+        if (stoppingIndexing) {
+            return ResultMessage.INDEXING_IS_CANCELED;
+        }
+
+        politenessScheduler.registerSite(siteUrl, pageFetcher.fetchText(siteUrl.concat("/robots.txt")).join());
+
+        if (visitedPages.needsSavedPaths()) {
+            pageIndexService.forEachPagePath(siteEntity, visitedPages::addSavedPath);
+        }
+        acceptedPagesCount.set(pageIndexService.getPagesCount(siteEntity));
+        lastSavedPageId.set(pageIndexService.getLastPageId(siteEntity));
+        pendingPagesCount.incrementAndGet(); // обход не завершится, пока ссылки добавляются в очередь
+        for (CrawlCheckpoint.Link link : checkpoint.links()) {
+            if (visitedPages.add(link.path())) {
+                acceptedPagesCount.incrementAndGet();
+                addToFrontier(new PageLink(link.path(), link.referrer(), link.depth(), 1, null));
+            }
+        }
+        log.info("Обход сайта {} возобновлен: {} страниц в очереди", siteUrl, frontier.size());
+        startFetches();
+        if (pendingPagesCount.decrementAndGet() == 0) {
+            crawlCompletion.complete(null);
+        }
+
+        return awaitCompletion();
+    }
+
+
+    /**
+     * Saves links of the frontier and of pages in progress to the checkpoint of the site.
+     * Is called periodically and before the crawl is stopped. Max ID of saved pages is tracked by the crawler,
+     * so transitions of pages are not blocked by a query to the DB during the snapshot.
+     */
+    public synchronized void saveCheckpoint() {
+        if (checkpointIntervalMillis <= 0 || isCheckpointingFinished || isIncremental) {
+            return;
+        }
+        List<CrawlCheckpoint.Link> links = new ArrayList<>();
+        int lastPageId;
+        stateLock.writeLock().lock();
+        try {
+            pagesInProgress.values().forEach(pageLink -> links.add(pageLink.toCheckpointLink()));
+            frontier.forEach(pageLink -> links.add(pageLink.toCheckpointLink()));
+            lastPageId = lastSavedPageId.get();
+        } finally {
+            stateLock.writeLock().unlock();
+        }
+        checkpointStore.save(new CrawlCheckpoint(siteUrl, lastPageId, links));
+    }
+
+
+    /**
+     * Deletes pages saved by a previous indexing, which were not met during the incremental crawl or were not found
+     * on the site. Must be called after the crawl is completed and frequencies of lemmas of the site are saved.
+     */
+    public void deleteVanishedPages() {
+        if (!isIncremental) {
+            return;
+        }
+        BitSet keptPagesIds;
+        synchronized (seenPagesIds) {
+            keptPagesIds = (BitSet) seenPagesIds.clone();
+        }
+        pageIndexService.deletePagesExcept(siteEntity, keptPagesIds, lastStoredPageId);
+    }
+
+
+    private ResultMessage awaitCompletion() {
+        crawlCompletion.join();
+
+        if (stoppingIndexing) {
+            return ResultMessage.INDEXING_IS_CANCELED;
+        }
+        synchronized (this) {
+            isCheckpointingFinished = true;
+            checkpointStore.delete(siteUrl);
+        }
+        return ResultMessage.INDEXING_IS_COMPLETED;
+    }
+
+
+    private void addToFrontier(PageLink pageLink) {
+        stateLock.readLock().lock();
+        try {
+            pendingPagesCount.incrementAndGet();
+            frontier.add(pageLink);
+        } finally {
+            stateLock.readLock().unlock();
+        }
+    }
+
+
+    /**
+     * Starts fetches of pages from the frontier while the number of pages in progress is below the limit.
+     * Is called whenever a page is added to the frontier or leaves the pipeline.
+     */
+    private void startFetches() {
+        while (!frontier.isEmpty()) {
+            if (!pagesInProgressPermits.tryAcquire()) {
+                return; // страница, покидающая конвейер, снова вызовет этот метод
+            }
+            PageLink pageLink;
+            stateLock.readLock().lock();
+            try {
+                pageLink = frontier.poll();
+                if (pageLink != null) {
+                    pagesInProgress.put(pageLink.path(), pageLink);
+                }
+            } finally {
+                stateLock.readLock().unlock();
+            }
+            if (pageLink == null) {
+                pagesInProgressPermits.release();
+                continue;
+            }
+            if (stoppingIndexing) {
+                finishPage(pageLink, null);
+                continue;
+            }
+            fetch(pageLink);
+        }
+    }
+
+
+    /**
+     * Requests are started at the time, reserved in {@link PolitenessScheduler}. In the asynchronous mode
+     * waiting for the start does not occupy any thread, in the virtual threads mode it parks only
+     * the virtual thread of the fetch.
+     */
+    private void fetch(PageLink pageLink) {
+        String url = siteUrl.concat(pageLink.path());
+        if (pageLink.attempt() == 1) {
+            try {
+                pageLink = pageLink.withStoredPage(lookUpStoredPage(pageLink.path()));
+            } catch (Exception e) {
+                log.warn("Ошибка при чтении страницы {} из БД: {}", url, e.toString());
+                onFetched(pageLink, null);
+                return;
+            }
+        }
+        PageLink fetchedLink = pageLink;
+
+        if (executors.isVirtualThreadsMode()) {
+            try {
+                executors.getFetchExecutor().execute(() ->
+                        onFetched(fetchedLink, fetchBlocking(url, fetchedLink, executors.getFetchPermits())));
+            } catch (RejectedExecutionException e) {
+                onFetched(fetchedLink, null);
+            }
+            return;
+        }
+
+        long delay = politenessScheduler.reserveDelay(url);
+        CompletableFuture.runAsync(() -> {}, CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS))
+                .thenCompose(v -> stoppingIndexing ? CompletableFuture.completedFuture(null) :
+                        pageFetcher.fetch(url, fetchedLink.referrer(), fetchedLink.storedVersion()))
+                .whenComplete((fetchedPage, e) -> onFetched(fetchedLink, fetchedPage));
+    }
+
+
+    /**
+     * In the incremental mode finds the page among pages saved by a previous indexing and marks it as met.
+     *
+     * @return saved page or null, if the page is not found or the mode is not incremental.
+     */
+    private StoredPage lookUpStoredPage(String path) {
+        if (!isIncremental) {
+            return null;
+        }
+        StoredPage storedPage = pageIndexService.getStoredPage(siteEntity, path);
+        if (storedPage != null) {
+            markPageSeen(storedPage);
+        }
+        return storedPage;
+    }
+
+
+    private void markPageSeen(StoredPage storedPage) {
+        synchronized (seenPagesIds) {
+            seenPagesIds.set(storedPage.id());
+        }
+    }
+
+
+    private void markPageVanished(StoredPage storedPage) {
+        synchronized (seenPagesIds) {
+            seenPagesIds.clear(storedPage.id());
+        }
+    }
+
+
+    /**
+     * The permit is acquired before the start time is reserved, so waiting for the permit doesn't shift the request
+     * to the host past its reserved time and requests to the host keep the interval.
+     *
+     * @param fetchPermits permits for fetches of all sites or null, if the number of fetches is not limited.
+     */
+    private FetchedPage fetchBlocking(String url, PageLink pageLink, Semaphore fetchPermits) {
+        try {
+            if (fetchPermits != null) {
+                fetchPermits.acquire();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+        try {
+            Thread.sleep(politenessScheduler.reserveDelay(url));
+            if (stoppingIndexing) {
+                return null;
+            }
+            FetchedPage fetchedPage = pageFetcher.fetch(url, pageLink.referrer(), pageLink.storedVersion()).join();
+            if (fetchedPage != null) {
+                politenessScheduler.onResponse(url, fetchedPage.getStatusCode(), fetchedPage.getRetryAfter());
+            }
+            return fetchedPage;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } finally {
+            if (fetchPermits != null) {
+                fetchPermits.release();
+            }
+        }
+    }
+
+
+    private void onFetched(PageLink pageLink, FetchedPage fetchedPage) {
+        if (fetchedPage != null && !executors.isVirtualThreadsMode()) {
+            politenessScheduler.onResponse(
+                    fetchedPage.getUrl(), fetchedPage.getStatusCode(), fetchedPage.getRetryAfter());
+        }
+        if (fetchedPage != null && PolitenessScheduler.isOverloadStatus(fetchedPage.getStatusCode()) &&
+                pageLink.attempt() < MAX_FETCH_ATTEMPTS && !stoppingIndexing) {
+            fetch(pageLink.nextAttempt()); // страница остается в обработке до следующей попытки
+            return;
+        }
+        if (fetchedPage == null) {
+            finishPage(pageLink, null);
+            startFetches();
+        } else {
+            submitToParse(pageLink, fetchedPage);
+        }
+    }
+
+
+    private void submitToParse(PageLink pageLink, FetchedPage fetchedPage) {
+        try {
+            executors.getParseExecutor().execute(() -> parse(pageLink, fetchedPage));
+        } catch (RejectedExecutionException e) {
+            finishPage(pageLink, null);
+            startFetches();
+        }
+    }
+
+
+    /**
+     * Extracts links of the page and lemmatizes its text. DOM of the page is not kept after this stage.
+     */
+    private void parse(PageLink pageLink, FetchedPage fetchedPage) {
+        String truePath = null;
+        boolean isPassedToWrite = false;
+        try {
+            if (stoppingIndexing) {
+                return;
+            }
+            if (fetchedPage.isNotModified() && pageLink.storedPage() != null) {
+                parseNotModified(pageLink);
+                return;
+            }
+            if (pageLink.storedPage() != null && isVanishedStatus(fetchedPage.getStatusCode())) {
+                markPageVanished(pageLink.storedPage());
+                return;
+            }
+            if (pageIndexService.checkFetchedPage(fetchedPage) != ResultMessage.PAGE_IS_CHECKED) {
+                return;
+            }
+            String path;
+            try {
+                path = pageIndexService.normalizePath(fetchedPage.getUrl(), siteUrl, indexingSettings);
+            } catch (RuntimeException e) {
+                return;
+            }
+            if (!path.equals(pageLink.path())) {
+                if (pageLink.storedPage() != null) {
+                    markPageVanished(pageLink.storedPage()); // теперь страница перенаправляет на другой адрес
+                }
+                if (!visitedPages.add(path)) {
+                    return; // страница перенаправила на уже встреченный адрес
+                }
+                truePath = path;
+            }
+            StoredPage storedPage = truePath == null ? pageLink.storedPage() : lookUpStoredPage(truePath);
+
+            Document htmlDoc = fetchedPage.parseBody();
+            String content = new String(fetchedPage.getBody(), htmlDoc.charset());
+            addLinksToFrontier(htmlDoc, path, pageLink.depth());
+            PageVersion version = new PageVersion(PageVersion.hashText(htmlDoc.body().text()),
+                    fetchedPage.getEtag(), fetchedPage.getLastModified());
+            // текст страницы не изменился, поэтому леммы и индексы страницы остаются прежними;
+            // заголовок, текст и леммы извлекаются в потоке разбора, а не в потоке записи
+            PageText pageText = storedPage != null && storedPage.version().textHash() == version.textHash() ?
+                    null : pageIndexService.getPageText(htmlDoc);
+            if (pageText == null && !storedPage.version().hasOtherValidators(version)) {
+                return;
+            }
+            Map<String, Integer> lemmasMentions = pageText == null ? null : pageText.lemmasMentions();
+
+            String releasedPath = truePath;
+            StoredPage writtenPage = storedPage;
+            executors.getWriteExecutor().execute(() ->
+                    write(pageLink, releasedPath, path, fetchedPage, content, writtenPage, pageText, version,
+                            lemmasMentions));
+            isPassedToWrite = true;
+        } catch (RejectedExecutionException e) {
+            log.debug("Сохранение страницы отменено: {}", e.toString());
+        } catch (Exception e) {
+            log.warn("Ошибка при обработке страницы {}: {}", fetchedPage.getUrl(), e.toString());
+        } finally {
+            if (!isPassedToWrite) {
+                finishPage(pageLink, truePath);
+            }
+            startFetches();
+        }
+    }
+
+
+    /**
+     * Links of a page, which is not modified since the previous indexing, are read from its saved content.
+     */
+    private void parseNotModified(PageLink pageLink) {
+        String content = pageIndexService.getPageContent(pageLink.storedPage().id());
+        if (content != null) {
+            addLinksToFrontier(Jsoup.parse(content, siteUrl.concat(pageLink.path())), pageLink.path(), pageLink.depth());
+        }
+    }
+
+
+    private static boolean isVanishedStatus(int statusCode) {
+        return statusCode == 404 || statusCode == 410;
+    }
+
+
+    /**
+     * @param pageDepth depth of the page, on which the links are found.
+     */
+    private void addLinksToFrontier(Document htmlDoc, String path, int pageDepth) {
+        int maxDepth = indexingSettings.getMaxDepth();
+        if (maxDepth > 0 && pageDepth >= maxDepth) {
+            return;
+        }
+        int depth = pageDepth + 1;
+        String referrer = siteUrl.concat(path);
+        int maxPages = indexingSettings.getMaxPages();
+        for (Element element : htmlDoc.body().select(linksSelector)) {
+            if (stoppingIndexing) {
+                return;
+            }
+            String elementPath;
+            try {
+                elementPath = pageIndexService.normalizePath(element.attr("href"), siteUrl, indexingSettings);
+            } catch (RuntimeException e) {
+                continue;
+            }
+            if (elementPath.concat("/").equals(path) || elementPath.equals(path.concat("/"))) {
+                continue;
+            }
+            if (maxPages > 0 && acceptedPagesCount.get() >= maxPages) {
+                return;
+            }
+            if (!visitedPages.add(elementPath)) {
+                continue;
+            }
+            if (maxPages > 0 && acceptedPagesCount.incrementAndGet() > maxPages) {
+                visitedPages.release(elementPath);
+                return;
+            }
+            addToFrontier(new PageLink(elementPath, referrer, depth, 1, null));
+        }
+    }
+
+
+    /**
+     * @param content        HTML-code of the page, decoded with the charset of the page.
+     * @param storedPage     page saved by a previous indexing or null.
+     * @param pageText       title and text of the page or null, if the text of the stored page has not changed.
+     * @param lemmasMentions lemmas of the page or null, if the text of the stored page has not changed.
+     */
+    private void write(PageLink pageLink, String truePath, String path, FetchedPage fetchedPage, String content,
+                       StoredPage storedPage, PageText pageText, PageVersion version,
+                       Map<String, Integer> lemmasMentions) {
+        try {
+            if (stoppingIndexing) {
+                return;
+            }
+            if (storedPage == null) {
+                int pageId = pageIndexService.saveIndexedPage(siteEntity, path, fetchedPage.getStatusCode(),
+                        content, pageText, version, lemmasMentions);
+                lastSavedPageId.accumulateAndGet(pageId, Math::max);
+            } else if (lemmasMentions == null) {
+                pageIndexService.updatePageVersion(storedPage.id(), version);
+            } else {
+                pageIndexService.updateIndexedPage(siteEntity, storedPage.id(), fetchedPage.getStatusCode(),
+                        content, pageText, version, lemmasMentions);
+            }
+        } catch (Exception e) {
+            log.warn("Ошибка при сохранении страницы {}: {}", fetchedPage.getUrl(), e.toString());
+        } finally {
+            finishPage(pageLink, truePath);
+            startFetches();
+        }
+    }
+
+
+    /**
+     * Is called exactly once for every page, which was put to the pipeline.
+     *
+     * @param truePath path after redirects, if it differs from the path of the link, otherwise null.
+     */
+    private void finishPage(PageLink pageLink, String truePath) {
+        visitedPages.release(pageLink.path());
+        if (truePath != null) {
+            visitedPages.release(truePath);
+        }
+        stateLock.readLock().lock();
+        try {
+            pagesInProgress.remove(pageLink.path());
+        } finally {
+            stateLock.readLock().unlock();
+        }
+        pagesInProgressPermits.release();
+        if (pendingPagesCount.decrementAndGet() == 0) {
+            crawlCompletion.complete(null);
+            return;
+        }
+        saveCheckpointIfDue();
+    }
+
+
+    private void saveCheckpointIfDue() {
+        long checkpointTime = nextCheckpointTime.get();
+        if (checkpointIntervalMillis <= 0 || stoppingIndexing || System.currentTimeMillis() < checkpointTime ||
+                !nextCheckpointTime.compareAndSet(checkpointTime, System.currentTimeMillis() + checkpointIntervalMillis)) {
+            return;
+        }
+        synchronized (this) {
+            // во время ожидания монитора индексация могла быть остановлена с сохранением контрольной точки
+            if (!stoppingIndexing) {
+                saveCheckpoint();
+            }
+        }
+    }
+
+
+    /**
+     * @param referrer   URL of the page, where the link was found.
+     * @param depth      number of links from the main page to the page.
+     * @param attempt    number of the fetch attempt.
+     * @param storedPage page of the link saved by a previous indexing, if it is found in the incremental mode.
+     */
+    private record PageLink(String path, String referrer, int depth, int attempt, StoredPage storedPage) {
+
+        PageLink nextAttempt() {
+            return new PageLink(path, referrer, depth, attempt + 1, storedPage);
+        }
+
+        PageLink withStoredPage(StoredPage storedPage) {
+            return new PageLink(path, referrer, depth, attempt, storedPage);
+        }
+
+        PageVersion storedVersion() {
+            return storedPage == null ? null : storedPage.version();
+        }
+
+        CrawlCheckpoint.Link toCheckpointLink() {
+            return new CrawlCheckpoint.Link(path, referrer, depth);
+        }
+
+    }
+
+}
@@ -11,7 +11,11 @@ import searchengine.controllers.ApiController;
 import searchengine.model.SiteEntity;
 import searchengine.model.SiteStatus;
 import searchengine.services.ResultMessage;
+import searchengine.services.crud.LemmaCRUDService;
+import searchengine.services.crud.PageCRUDService;
 import searchengine.services.crud.SiteCRUDService;
+import searchengine.services.invertedindex.InvertedIndexService;
+import searchengine.services.morphology.MorphologyService;
 
 import java.util.*;
 import java.util.concurrent.*;
@@ -24,9 +28,21 @@ public class SitesIndexServiceImpl implements SitesIndexService {
     private final SiteCRUDService siteService;
     private final PageIndexService pageIndexService;
     private final IndexingSettings indexingSettings;
-
-    private ThreadPoolExecutor poolExecutor;
-    private List<ForkJoinPool> fjpList = new ArrayList<>();
+    private final InvertedIndexService invertedIndexService;
+    private final LemmaFrequencyAggregator lemmaFrequencyAggregator;
+    private final LemmaIdCache lemmaIdCache;
+    private final MorphologyService morphologyService;
+    private final PageFetcher pageFetcher;
+    private final PolitenessScheduler politenessScheduler;
+    private final CrawlCheckpointStore checkpointStore;
+    private final PageCRUDService pageService;
+    private final LemmaCRUDService lemmaService;
+
+    private final Map<String, SiteCrawler> activeCrawlers = new ConcurrentHashMap<>();
+    // удаляет неактивные поколения сайтов, не задерживая индексацию и поиск
+    private final ExecutorService generationsCleaner = Executors.newSingleThreadExecutor();
+    private ExecutorService poolExecutor;
+    private CrawlExecutors crawlExecutors;
     private volatile boolean stopIndexingFlag = false;
 
 
@@ -35,11 +51,15 @@ public class SitesIndexServiceImpl implements SitesIndexService {
         log.info("Запущена индексация для сайтов: {}", indexingSettings.getSites());
         long startTime = System.currentTimeMillis();
         stopIndexingFlag = false;
-        RecursivePageIndexing.setStoppingIndexing(false);
-        int coresCount = Runtime.getRuntime().availableProcessors();
+        SiteCrawler.setStoppingIndexing(false);
         int sitesCount = indexingSettings.getSites().size();
-        int threadsCount = Math.min(coresCount, sitesCount);
-        poolExecutor = (ThreadPoolExecutor) Executors.newFixedThreadPool(threadsCount);
+        crawlExecutors = createCrawlExecutors();
+        if (crawlExecutors.isVirtualThreadsMode()) {
+            poolExecutor = Executors.newVirtualThreadPerTaskExecutor(); // все сайты индексируются одновременно
+        } else {
+            int threadsCount = Math.min(Runtime.getRuntime().availableProcessors(), sitesCount);
+            poolExecutor = Executors.newFixedThreadPool(threadsCount);
+        }
         CountDownLatch cdLatch = new CountDownLatch(sitesCount);
 
         for (Site site : indexingSettings.getSites()) {
@@ -61,10 +81,13 @@ public class SitesIndexServiceImpl implements SitesIndexService {
             log.warn("Метод cdLatch.await в экземпляре класса {} вызвал исключение: {}",
                     this.getClass(), e.toString());
         }
-        fjpList.forEach(ForkJoinPool::shutdown);
         poolExecutor.shutdown();
+        crawlExecutors.shutdown();
+        politenessScheduler.clear();
         ApiController.setIndexingIsRunning(false);
         log.info("КОНЕЦ! Индексация завершена. Затраченное время: {} с", (System.currentTimeMillis() - startTime) / 1000);
+        log.info("Доля попаданий в кэш морфологии: {}%",
+                String.format("%.1f", morphologyService.getCacheHitRate() * 100));
     }
 
 
@@ -72,8 +95,8 @@ public class SitesIndexServiceImpl implements SitesIndexService {
     public void stopSitesIndexing() {
         log.warn(ResultMessage.INDEXING_IS_CANCELED.toString());
         stopIndexingFlag = true;
-        RecursivePageIndexing.setStoppingIndexing(true);
-        fjpList.forEach(ForkJoinPool::shutdown);
+        activeCrawlers.values().forEach(SiteCrawler::saveCheckpoint); // до остановки, пока очередь не очищена
+        SiteCrawler.setStoppingIndexing(true);
         poolExecutor.shutdown();
         try {
             poolExecutor.awaitTermination(Long.MAX_VALUE, TimeUnit.SECONDS);
@@ -81,13 +104,11 @@ public class SitesIndexServiceImpl implements SitesIndexService {
             log.warn("Метод awaitTermination в экземпляре класса {} вызвал исключение: {}",
                     this.getClass(), e.toString());
         }
-        indexingSettings.getSites().forEach(site -> {
-            SiteEntity siteEntity = siteService.getByUrl(site.getUrl());
-            if (siteEntity != null && siteEntity.getStatus() == SiteStatus.INDEXING) {
-                siteService.updateStatusByUrl(
-                        site.getUrl(), SiteStatus.FAILED, ResultMessage.INDEXING_IS_CANCELED.toString());
-            }
-        });
+        lemmaFrequencyAggregator.finishAllSites();
+        indexingSettings.getSites().forEach(site -> siteService.getAllGenerationsByUrl(site.getUrl()).stream()
+                .filter(siteEntity -> siteEntity.getStatus() == SiteStatus.INDEXING)
+                .forEach(siteEntity -> siteService.updateStatusById(
+                        siteEntity.getId(), SiteStatus.FAILED, ResultMessage.INDEXING_IS_CANCELED.toString())));
     }
 
 
@@ -131,10 +152,19 @@ public class SitesIndexServiceImpl implements SitesIndexService {
             siteEntity = new SiteEntity(SiteStatus.FAILED,
                     ResultMessage.SITE_IS_NOT_INDEXED.toString(),
                     siteUrl, siteName);
-            siteService.save(siteEntity);
+            try {
+                siteService.save(siteEntity);
+            } catch (RuntimeException e) {
+                return ResultMessage.SITE_PARTITIONS_NOT_ADDED;
+            }
         }
         log.info("Запущена индексация отдельной страницы: {}", pageUrl);
-        pageIndexService.indexAndSaveSinglePage(siteEntity, path, htmlDoc);
+        try {
+            pageIndexService.indexAndSaveSinglePage(siteEntity, path, htmlDoc);
+        } catch (RuntimeException e) {
+            log.warn("Ошибка при сохранении страницы {}: {}", pageUrl, e.toString());
+            return ResultMessage.PAGE_NOT_SAVED;
+        }
         log.info("Индексация страницы: {} завершена", pageUrl);
 
         return ResultMessage.INDEXING_IS_COMPLETED;
@@ -143,43 +173,196 @@ public class SitesIndexServiceImpl implements SitesIndexService {
 
     private void indexSiteTask(Site site) {
         String siteUrl = site.getUrl();
-        while (true) {
-            try {
-                siteService.deleteByUrl(siteUrl);
-                break;
-            } catch (Exception e) { // ToDo Уточнить вид Exception, когда его поймаю
-                log.warn("Restart transaction: delete site, due to the error: {}", e.toString());
+        SiteEntity activeSiteEntity = null;
+        SiteEntity shadowSiteEntity = null;
+        for (SiteEntity generation : siteService.getAllGenerationsByUrl(siteUrl)) {
+            if (generation.isActive()) {
+                activeSiteEntity = generation;
+            } else if (generation.getStatus() == SiteStatus.INDEXED || shadowSiteEntity != null) {
+                deleteGenerationInBackground(generation); // устаревшее поколение, не удаленное до перезапуска
+            } else {
+                shadowSiteEntity = generation;
             }
         }
-        log.info("Старт индексации для сайта: {}", siteUrl);
-        SiteEntity siteEntity = new SiteEntity(SiteStatus.INDEXING, null, siteUrl, site.getName());
-        siteService.save(siteEntity);
 
-        ResultMessage indexResultMsg = indexSite(siteEntity);
+        SiteEntity interruptedSiteEntity = shadowSiteEntity != null ? shadowSiteEntity : activeSiteEntity;
+        CrawlCheckpoint checkpoint = loadCheckpoint(interruptedSiteEntity, siteUrl);
+        if (checkpoint == null && shadowSiteEntity != null) {
+            deleteGenerationInBackground(shadowSiteEntity);
+        }
+        boolean isIncremental = checkpoint == null && indexingSettings.isIncrementalIndexing() && activeSiteEntity != null;
+        // при инкрементальной индексации страницы обновляются по одной, поэтому поиск по сайту не прерывается
+        boolean isSearchableDuringIndexing = isIncremental && indexingSettings.isShadowIndexing() &&
+                activeSiteEntity.getStatus() == SiteStatus.INDEXED;
+        SiteEntity siteEntity;
+        if (checkpoint != null) {
+            log.info("Возобновление индексации сайта {} с контрольной точки", siteUrl);
+            siteEntity = interruptedSiteEntity;
+            prepareSiteToResume(siteEntity, checkpoint);
+        } else if (isIncremental) {
+            log.info("Старт инкрементальной индексации для сайта: {}", siteUrl);
+            checkpointStore.delete(siteUrl);
+            siteEntity = activeSiteEntity;
+            if (!isSearchableDuringIndexing) {
+                siteService.updateStatusById(siteEntity.getId(), SiteStatus.INDEXING, null);
+            }
+        } else if (indexingSettings.isShadowIndexing() && activeSiteEntity != null &&
+                activeSiteEntity.getStatus() == SiteStatus.INDEXED) {
+            checkpointStore.delete(siteUrl);
+            log.info("Старт индексации для сайта: {} в новое поколение, до его готовности поиск выполняется " +
+                    "по текущему поколению", siteUrl);
+            siteEntity = new SiteEntity(SiteStatus.INDEXING, null, siteUrl, site.getName());
+            siteEntity.setActive(false);
+            if (!saveNewSite(siteEntity)) {
+                return;
+            }
+        } else {
+            checkpointStore.delete(siteUrl);
+            if (activeSiteEntity != null) {
+                invertedIndexService.removeSite(activeSiteEntity.getId());
+                try {
+                    siteService.deleteWithData(activeSiteEntity.getId(), siteUrl);
+                } catch (Exception e) {
+                    log.warn("Ошибка при удалении данных сайта {}: {}", siteUrl, e.toString());
+                    siteService.updateStatusById(activeSiteEntity.getId(), SiteStatus.FAILED,
+                            ResultMessage.SITE_DATA_NOT_DELETED.toString());
+                    return;
+                }
+            }
+            log.info("Старт индексации для сайта: {}", siteUrl);
+            siteEntity = new SiteEntity(SiteStatus.INDEXING, null, siteUrl, site.getName());
+            if (!saveNewSite(siteEntity)) {
+                return;
+            }
+        }
+
+        lemmaIdCache.startSite(siteEntity.getId());
+        if (indexingSettings.isAggregateLemmaFrequencies()) {
+            lemmaFrequencyAggregator.startSite(siteEntity.getId());
+        }
+        SiteCrawler siteCrawler = new SiteCrawler(siteEntity, pageIndexService, pageFetcher,
+                politenessScheduler, checkpointStore, indexingSettings, crawlExecutors, isIncremental);
+        ResultMessage indexResultMsg;
+        try {
+            indexResultMsg = indexSite(siteCrawler, checkpoint);
+        } finally {
+            lemmaFrequencyAggregator.finishSite(siteEntity.getId());
+            lemmaIdCache.finishSite(siteEntity.getId());
+        }
 
         if (indexResultMsg == ResultMessage.INDEXING_IS_COMPLETED) {
-            siteService.updateStatusByUrl(siteUrl, SiteStatus.INDEXED, null);
+            // после сохранения частот лемм, т.к. частоты пересчитываются по таблице 'index'
+            siteCrawler.deleteVanishedPages();
+            if (siteEntity.isActive()) {
+                siteService.updateStatusById(siteEntity.getId(), SiteStatus.INDEXED, null);
+            } else {
+                activateGeneration(siteEntity);
+            }
         } else {
             if (!stopIndexingFlag) {
                 if (indexResultMsg == ResultMessage.PAGE_NOT_FOUND) {
                     indexResultMsg = ResultMessage.SITE_IS_UNAVAILABLE;
                 }
-                siteService.updateStatusByUrl(siteUrl, SiteStatus.FAILED, indexResultMsg.toString());
+                siteService.updateStatusById(siteEntity.getId(),
+                        isSearchableDuringIndexing ? SiteStatus.INDEXED : SiteStatus.FAILED, indexResultMsg.toString());
             }
         }
         log.info("Индексация завершена для сайта: {} с результатом: {}", siteUrl, indexResultMsg.toString());
     }
 
 
-    private ResultMessage indexSite(SiteEntity siteEntity) {
+    /**
+     * @return false, if the site has not been saved with its partitions, so its pages can not be saved.
+     */
+    private boolean saveNewSite(SiteEntity siteEntity) {
+        try {
+            siteService.save(siteEntity);
+            return true;
+        } catch (RuntimeException e) {
+            log.error("Индексация сайта {} не запущена: {}", siteEntity.getUrl(),
+                    ResultMessage.SITE_PARTITIONS_NOT_ADDED);
+            return false;
+        }
+    }
+
+
+    /**
+     * Switches searches of the site to the new generation and deletes the previous one in the background.
+     */
+    private void activateGeneration(SiteEntity siteEntity) {
+        SiteEntity previousSiteEntity = siteService.getByUrl(siteEntity.getUrl());
+        siteService.activate(siteEntity);
+        log.info("Поиск по сайту {} переключен на новое поколение", siteEntity.getUrl());
+        if (previousSiteEntity != null && !previousSiteEntity.getId().equals(siteEntity.getId())) {
+            deleteGenerationInBackground(previousSiteEntity);
+        }
+    }
+
+
+    private void deleteGenerationInBackground(SiteEntity siteEntity) {
+        generationsCleaner.execute(() -> {
+            invertedIndexService.removeSite(siteEntity.getId());
+            try {
+                siteService.deleteWithData(siteEntity.getId(), siteEntity.getUrl());
+                log.info("Удалено неактивное поколение сайта {} (id {})", siteEntity.getUrl(), siteEntity.getId());
+            } catch (Exception e) {
+                log.warn("Ошибка при удалении неактивного поколения сайта {} (id {}): {}",
+                        siteEntity.getUrl(), siteEntity.getId(), e.toString());
+            }
+        });
+    }
+
+
+    private CrawlExecutors createCrawlExecutors() {
+        int coresCount = Runtime.getRuntime().availableProcessors();
+        int parseThreadsCount = indexingSettings.getParseThreads() > 0 ? indexingSettings.getParseThreads() : coresCount;
+        ExecutorService parseExecutor = Executors.newFixedThreadPool(parseThreadsCount);
+        ExecutorService writeExecutor = Executors.newFixedThreadPool(indexingSettings.getDbWriterThreads());
+        if (indexingSettings.isUseVirtualThreads()) {
+            return new CrawlExecutors(parseExecutor, writeExecutor, Executors.newVirtualThreadPerTaskExecutor(),
+                    new Semaphore(indexingSettings.getMaxConcurrentFetches()));
+        }
+        return new CrawlExecutors(parseExecutor, writeExecutor, null, null);
+    }
+
+
+    /**
+     * @param checkpoint checkpoint to resume the crawl from or null to crawl the site from the main page.
+     */
+    private ResultMessage indexSite(SiteCrawler siteCrawler, CrawlCheckpoint checkpoint) {
+        String siteUrl = siteCrawler.getSiteUrl();
+        activeCrawlers.put(siteUrl, siteCrawler);
+        try {
+            return checkpoint == null ? siteCrawler.crawl() : siteCrawler.resume(checkpoint);
+        } finally {
+            activeCrawlers.remove(siteUrl);
+        }
+    }
+
 
-        RecursivePageIndexing recursivePageIndexing =
-                new RecursivePageIndexing(pageIndexService, siteEntity, indexingSettings);
+    /**
+     * @return checkpoint of the site, if indexing of the site was interrupted and may be resumed, otherwise null.
+     */
+    private CrawlCheckpoint loadCheckpoint(SiteEntity interruptedSiteEntity, String siteUrl) {
+        if (!indexingSettings.isResumeIndexing() || indexingSettings.getCheckpointInterval() <= 0 ||
+                interruptedSiteEntity == null || interruptedSiteEntity.getStatus() == SiteStatus.INDEXED) {
+            return null;
+        }
+        return checkpointStore.load(siteUrl);
+    }
 
-        ForkJoinPool forkJoinPool = new ForkJoinPool();
-        fjpList.add(forkJoinPool);
 
-        return forkJoinPool.invoke(recursivePageIndexing);
+    /**
+     * Returns the DB to the state of the checkpoint: deletes pages saved after it, recalculates frequencies
+     * of lemmas, which were not saved or were increased by the deleted pages, and reloads the inverted index of the site.
+     */
+    private void prepareSiteToResume(SiteEntity siteEntity, CrawlCheckpoint checkpoint) {
+        siteService.updateStatusById(siteEntity.getId(), SiteStatus.INDEXING, null);
+        pageService.deleteBySiteEntityAndIdGreaterThan(siteEntity, checkpoint.lastPageId());
+        pageService.deleteBySiteEntityAndPaths(siteEntity,
+                checkpoint.links().stream().map(CrawlCheckpoint.Link::path).toList());
+        lemmaService.recalculateFrequencies(siteEntity.getId());
+        invertedIndexService.reloadSite(siteEntity);
     }
 
 
@@ -0,0 +1,9 @@
+package searchengine.services.indexing;
+
+/**
+ * Page of a site, saved to the DB by a previous indexing.
+ *
+ * @param version version of the page; text hash of pages saved before versions were introduced is 0.
+ */
+public record StoredPage(int id, PageVersion version) {
+}
@@ -0,0 +1,36 @@
+package searchengine.services.indexing;
+
+/**
+ * Paths of pages of a site, which have already been met during the crawl.
+ * Implementation is chosen by param 'check-visited-pages-algorithm' in settings-file.
+ */
+interface VisitedPages {
+
+    /**
+     * @return true, if the path has not been met before. Only one of concurrent calls with the same path returns true.
+     */
+    boolean add(String path);
+
+    /**
+     * Is called when processing of the page with the path is finished.
+     */
+    default void release(String path) {
+    }
+
+
+    /**
+     * Marks the path of a page, which was saved to the DB before the crawl was resumed, as met.
+     */
+    default void addSavedPath(String path) {
+        add(path);
+    }
+
+
+    /**
+     * @return false, if paths of pages saved to the DB are considered met without calls of 'addSavedPath'.
+     */
+    default boolean needsSavedPaths() {
+        return true;
+    }
+
+}
@@ -0,0 +1,242 @@
+package searchengine.services.indexing;
+
+import searchengine.config.IndexingSettings;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Keeps 64-bit hashes of met paths in open-addressing hash tables of longs: about 16 bytes per path
+ * instead of about 100 bytes of a path string in a set. Algorithm 2 of checking visited pages.
+ * Hashes are inserted with CAS without locks. When a table of a segment grows, its cells are replaced one by one
+ * with a marker and copied to a new table; an insert, which meets the marker, waits until the growth is finished
+ * and is repeated in the new table. Only the growth of a segment takes its lock.
+ * If param 'visited-pages-off-heap' in settings-file is true, tables are allocated outside the Java heap.
+ * Different paths with the same 64-bit hash are considered the same page; for a million pages of a site
+ * the probability of such a collision is about 3e-8.
+ */
+class VisitedPagesHashSet implements VisitedPages {
+
+    private static final int SEGMENTS_COUNT = 16;
+    private static final int SEGMENT_SHIFT = Long.SIZE - Integer.numberOfTrailingZeros(SEGMENTS_COUNT);
+    private static final int MIN_SEGMENT_CAPACITY = 1024;
+    // значение пустой ячейки и ячейки, перенесенной в увеличенную таблицу; хеши с этими значениями заменяются
+    private static final long EMPTY = 0;
+    private static final long MOVED = -1;
+    // результаты вставки хеша в таблицу
+    private static final int INSERTED = 1;
+    private static final int PRESENT = 0;
+    private static final int FULL = -1;
+    private static final int TABLE_MOVED = -2;
+
+    private final Segment[] segments = new Segment[SEGMENTS_COUNT];
+
+    VisitedPagesHashSet(IndexingSettings indexingSettings) {
+        int segmentCapacity = Math.max(MIN_SEGMENT_CAPACITY,
+                Integer.highestOneBit(Math.max(indexingSettings.getVisitedPagesCapacity() / SEGMENTS_COUNT, 1)) * 2);
+        for (int i = 0; i < SEGMENTS_COUNT; i++) {
+            segments[i] = new Segment(segmentCapacity, indexingSettings.isVisitedPagesOffHeap());
+        }
+    }
+
+
+    @Override
+    public boolean add(String path) {
+        long hash = Hash64.of(path);
+        if (hash == EMPTY || hash == MOVED) {
+            hash = 1;
+        }
+        return segments[(int) (hash >>> SEGMENT_SHIFT)].add(hash);
+    }
+
+
+    private static final class Segment {
+
+        private final Lock growLock = new ReentrantLock();
+        private final AtomicInteger size = new AtomicInteger();
+        private final boolean isOffHeap;
+        private volatile LongTable table;
+
+        Segment(int capacity, boolean isOffHeap) {
+            this.isOffHeap = isOffHeap;
+            this.table = createTable(capacity);
+        }
+
+
+        boolean add(long hash) {
+            while (true) {
+                LongTable currentTable = table;
+                int result = insert(currentTable, hash);
+                if (result == PRESENT) {
+                    return false;
+                }
+                if (result == INSERTED) {
+                    if (size.incrementAndGet() > currentTable.length() / 4 * 3) {
+                        grow(currentTable);
+                    }
+                    return true;
+                }
+                if (result == FULL) {
+                    grow(currentTable); // таблица заполнена параллельными вставками
+                } else {
+                    // таблицу увеличивает другой поток, блокировка освобождается после замены таблицы
+                    growLock.lock();
+                    growLock.unlock();
+                }
+            }
+        }
+
+
+        /**
+         * @return {@link #INSERTED}, {@link #PRESENT}, {@link #FULL} if there is no empty cell,
+         * or {@link #TABLE_MOVED} if the table is being copied to a greater one.
+         */
+        private static int insert(LongTable table, long hash) {
+            int mask = table.length() - 1;
+            int idx = (int) hash & mask;
+            for (int i = 0; i <= mask; i++) {
+                long value = table.get(idx);
+                if (value == hash) {
+                    return PRESENT;
+                }
+                if (value == MOVED) {
+                    return TABLE_MOVED;
+                }
+                if (value == EMPTY) {
+                    if (table.compareAndSet(idx, EMPTY, hash)) {
+                        return INSERTED;
+                    }
+                    value = table.get(idx);
+                    if (value == hash) {
+                        return PRESENT;
+                    }
+                    if (value == MOVED) {
+                        return TABLE_MOVED;
+                    }
+                }
+                idx = (idx + 1) & mask;
+            }
+            return FULL;
+        }
+
+
+        /**
+         * Every cell of the old table is atomically replaced with {@link #MOVED} before its value is copied,
+         * so no hash can be inserted to the old table after its cell is copied.
+         */
+        private void grow(LongTable oldTable) {
+            growLock.lock();
+            try {
+                if (table != oldTable) {
+                    return; // таблицу уже увеличил другой поток
+                }
+                LongTable newTable = createTable(oldTable.length() * 2);
+                for (int i = 0; i < oldTable.length(); i++) {
+                    long value = oldTable.getAndSet(i, MOVED);
+                    if (value != EMPTY) {
+                        insert(newTable, value);
+                    }
+                }
+                table = newTable;
+            } finally {
+                growLock.unlock();
+            }
+        }
+
+
+        private LongTable createTable(int capacity) {
+            return isOffHeap ? new OffHeapLongTable(capacity) : new HeapLongTable(capacity);
+        }
+
+    }
+
+
+    private interface LongTable {
+
+        int length();
+
+        long get(int idx);
+
+        boolean compareAndSet(int idx, long expectedValue, long newValue);
+
+        long getAndSet(int idx, long newValue);
+
+    }
+
+
+    private static final class HeapLongTable implements LongTable {
+
+        private final AtomicLongArray array;
+
+        HeapLongTable(int capacity) {
+            this.array = new AtomicLongArray(capacity);
+        }
+
+        @Override
+        public int length() {
+            return array.length();
+        }
+
+        @Override
+        public long get(int idx) {
+            return array.get(idx);
+        }
+
+        @Override
+        public boolean compareAndSet(int idx, long expectedValue, long newValue) {
+            return array.compareAndSet(idx, expectedValue, newValue);
+        }
+
+        @Override
+        public long getAndSet(int idx, long newValue) {
+            return array.getAndSet(idx, newValue);
+        }
+
+    }
+
+
+    /**
+     * Table in a direct buffer. Memory of the buffer is freed, when the buffer is collected by GC.
+     */
+    private static final class OffHeapLongTable implements LongTable {
+
+        private static final VarHandle LONGS =
+                MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+        private final ByteBuffer buffer;
+        private final int length;
+
+        OffHeapLongTable(int capacity) {
+            this.buffer = ByteBuffer.allocateDirect(capacity * Long.BYTES).order(ByteOrder.nativeOrder());
+            this.length = capacity;
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public long get(int idx) {
+            return (long) LONGS.getVolatile(buffer, idx * Long.BYTES);
+        }
+
+        @Override
+        public boolean compareAndSet(int idx, long expectedValue, long newValue) {
+            return LONGS.compareAndSet(buffer, idx * Long.BYTES, expectedValue, newValue);
+        }
+
+        @Override
+        public long getAndSet(int idx, long newValue) {
+            return (long) LONGS.getAndSet(buffer, idx * Long.BYTES, newValue);
+        }
+
+    }
+
+}
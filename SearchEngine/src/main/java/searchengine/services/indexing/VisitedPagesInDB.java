@@ -0,0 +1,56 @@
+package searchengine.services.indexing;
+
+import lombok.RequiredArgsConstructor;
+import searchengine.model.SiteEntity;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Checks presence of the page in the DB. Only paths of pages, which are being processed and therefore
+ * may be absent in the DB yet, are kept in memory. Algorithm 1 of checking visited pages.
+ * If param 'visited-pages-bloom-filter' in settings-file is true, paths met during the crawl are put
+ * to a Bloom filter, and the DB is not requested for paths, which are definitely absent in the filter.
+ */
+@RequiredArgsConstructor
+class VisitedPagesInDB implements VisitedPages {
+
+    private final PageIndexService pageIndexService;
+    private final SiteEntity siteEntity;
+    private final BloomFilter bloomFilter;
+    private final Set<String> pathsInProgress = ConcurrentHashMap.newKeySet();
+
+    @Override
+    public boolean add(String path) {
+        long hash = bloomFilter == null ? 0 : Hash64.of(path);
+        if ((bloomFilter == null || bloomFilter.mightContain(hash)) &&
+                pageIndexService.pageIsPresentInDB(siteEntity, path)) {
+            return false;
+        }
+        if (!pathsInProgress.add(path)) {
+            return false;
+        }
+        if (bloomFilter != null) {
+            bloomFilter.put(hash);
+        }
+        return true;
+    }
+
+    @Override
+    public void release(String path) {
+        pathsInProgress.remove(path);
+    }
+
+    @Override
+    public void addSavedPath(String path) {
+        if (bloomFilter != null) {
+            bloomFilter.put(Hash64.of(path));
+        }
+    }
+
+    @Override
+    public boolean needsSavedPaths() {
+        return bloomFilter != null;
+    }
+
+}
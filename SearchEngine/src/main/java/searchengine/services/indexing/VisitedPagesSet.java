@@ -0,0 +1,18 @@
+package searchengine.services.indexing;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps all met paths in memory. Algorithm 0 of checking visited pages.
+ */
+class VisitedPagesSet implements VisitedPages {
+
+    private final Set<String> paths = ConcurrentHashMap.newKeySet();
+
+    @Override
+    public boolean add(String path) {
+        return paths.add(path);
+    }
+
+}
@@ -0,0 +1,39 @@
+package searchengine.services.invertedindex;
+
+import searchengine.model.SiteEntity;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Resident inverted index of all sites. The index is built from the DB on startup
+ * and is kept current by the page indexing service, so search requests don't query the DB for posting lists.
+ */
+public interface InvertedIndexService {
+
+    /**
+     * @return posting list of the lemma on the site. If the lemma is absent, the returned postings are empty.
+     */
+    Postings getPostings(int siteId, String lemma);
+
+    /**
+     * @return numbers of pages and occurrences of lemmas on the site and lengths of its pages.
+     */
+    SiteIndexStats getSiteStats(int siteId);
+
+    /**
+     * @param lemmasRanks     map where key is lemma and value is rank of the lemma on the page.
+     * @param lemmasPositions map where key is lemma and value is encoded positions of the lemma on the page.
+     */
+    void addPage(int siteId, int pageId, Map<String, Integer> lemmasRanks, Map<String, byte[]> lemmasPositions);
+
+    void removePage(int siteId, int pageId, Collection<String> lemmas);
+
+    void removeSite(int siteId);
+
+    /**
+     * Replaces the index of the site with the one read from the DB.
+     */
+    void reloadSite(SiteEntity siteEntity);
+
+}
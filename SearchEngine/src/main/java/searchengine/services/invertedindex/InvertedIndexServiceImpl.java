@@ -0,0 +1,113 @@
+package searchengine.services.invertedindex;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import searchengine.model.SiteEntity;
+import searchengine.services.crud.IndexCRUDService;
+import searchengine.services.crud.PageCRUDService;
+import searchengine.services.crud.SiteCRUDService;
+import searchengine.services.search.SearchResultCache;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class InvertedIndexServiceImpl implements InvertedIndexService {
+
+    private final SiteCRUDService siteService;
+    private final PageCRUDService pageService;
+    private final IndexCRUDService indexService;
+    private final SearchResultCache searchResultCache;
+
+    private final Map<Integer, SiteInvertedIndex> siteIndexes = new ConcurrentHashMap<>();
+
+
+    @PostConstruct
+    void loadFromDB() {
+        long startTime = System.currentTimeMillis();
+        for (SiteEntity siteEntity : siteService.getAll()) {
+            siteIndexes.put(siteEntity.getId(), readSiteIndex(siteEntity));
+        }
+        log.info("Индекс загружен из БД. Затраченное время: {} мс", System.currentTimeMillis() - startTime);
+    }
+
+
+    @Override
+    public Postings getPostings(int siteId, String lemma) {
+        SiteInvertedIndex siteIndex = siteIndexes.get(siteId);
+        return siteIndex == null ? Postings.EMPTY : siteIndex.getPostings(lemma);
+    }
+
+
+    @Override
+    public SiteIndexStats getSiteStats(int siteId) {
+        SiteInvertedIndex siteIndex = siteIndexes.get(siteId);
+        return siteIndex == null ? SiteIndexStats.EMPTY : siteIndex.getStats();
+    }
+
+
+    @Override
+    public void addPage(int siteId, int pageId, Map<String, Integer> lemmasRanks, Map<String, byte[]> lemmasPositions) {
+        getSiteIndex(siteId).addPage(pageId, lemmasRanks, lemmasPositions);
+        searchResultCache.invalidateSite(siteId);
+    }
+
+
+    @Override
+    public void removePage(int siteId, int pageId, Collection<String> lemmas) {
+        SiteInvertedIndex siteIndex = siteIndexes.get(siteId);
+        if (siteIndex != null) {
+            siteIndex.removePage(pageId, lemmas);
+        }
+        searchResultCache.invalidateSite(siteId);
+    }
+
+
+    @Override
+    public void removeSite(int siteId) {
+        siteIndexes.remove(siteId);
+        searchResultCache.invalidateSite(siteId);
+    }
+
+
+    @Override
+    public void reloadSite(SiteEntity siteEntity) {
+        siteIndexes.put(siteEntity.getId(), readSiteIndex(siteEntity));
+        searchResultCache.invalidateSite(siteEntity.getId());
+    }
+
+
+    private SiteInvertedIndex readSiteIndex(SiteEntity siteEntity) {
+        SiteInvertedIndex siteIndex = new SiteInvertedIndex();
+        // строки упорядочены по id страниц, поэтому длина страницы считается по ее строкам подряд
+        int[] pageIdAndLength = new int[2];
+        indexService.forEachRowBySiteEntity(siteEntity, row -> {
+            siteIndex.add(row.getLemma(), row.getPageId(), row.getRank(), row.getPositions());
+            if (row.getPageId() != pageIdAndLength[0]) {
+                if (pageIdAndLength[1] > 0) {
+                    siteIndex.addPageLength(pageIdAndLength[0], pageIdAndLength[1]);
+                }
+                pageIdAndLength[0] = row.getPageId();
+                pageIdAndLength[1] = 0;
+            }
+            pageIdAndLength[1] += row.getRank();
+        });
+        if (pageIdAndLength[1] > 0) {
+            siteIndex.addPageLength(pageIdAndLength[0], pageIdAndLength[1]);
+        }
+        siteIndex.setPagesCount(pageService.getCountBySiteEntity(siteEntity));
+        log.info("Загружен индекс сайта {}: {} страниц", siteEntity.getUrl(), siteIndex.getPagesCount());
+        return siteIndex;
+    }
+
+
+    private SiteInvertedIndex getSiteIndex(int siteId) {
+        return siteIndexes.computeIfAbsent(siteId, id -> new SiteInvertedIndex());
+    }
+
+}
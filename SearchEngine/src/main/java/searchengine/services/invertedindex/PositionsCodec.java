@@ -0,0 +1,102 @@
+package searchengine.services.invertedindex;
+
+import java.util.Arrays;
+
+/**
+ * Encodes occurrences of a lemma on a page for column 'positions' of table 'index': the number of occurrences,
+ * then for every occurrence the differences of its position and offset from the previous ones,
+ * all as varints (7 bits per byte, the high bit is set in all bytes except the last one).
+ * Positions and offsets grow, so the differences are small, and an occurrence usually takes 2-3 bytes.
+ */
+public final class PositionsCodec {
+
+    private PositionsCodec() {
+    }
+
+
+    /**
+     * @param positions ascending positions of the occurrences.
+     * @param offsets   ascending offsets of the occurrences.
+     * @param size      number of the occurrences in the arrays.
+     */
+    public static byte[] encode(int[] positions, int[] offsets, int size) {
+        byte[] bytes = new byte[5 + size * 10];
+        int length = writeVarInt(bytes, 0, size);
+        int previousPosition = 0;
+        int previousOffset = 0;
+        for (int i = 0; i < size; i++) {
+            length = writeVarInt(bytes, length, positions[i] - previousPosition);
+            length = writeVarInt(bytes, length, offsets[i] - previousOffset);
+            previousPosition = positions[i];
+            previousOffset = offsets[i];
+        }
+        return Arrays.copyOf(bytes, length);
+    }
+
+
+    /**
+     * @throws IllegalArgumentException if the bytes are not encoded occurrences.
+     */
+    public static TermPositions decode(byte[] bytes) {
+        if (bytes == null || bytes.length == 0) {
+            return TermPositions.EMPTY;
+        }
+        VarIntReader reader = new VarIntReader();
+        reader.reset(bytes);
+        int size = reader.readVarInt();
+        // каждое вхождение занимает не менее 2 байт
+        if (size < 0 || size > bytes.length / 2) {
+            throw new IllegalArgumentException("Wrong number of encoded positions: " + size);
+        }
+        int[] positions = new int[size];
+        int[] offsets = new int[size];
+        int position = 0;
+        int offset = 0;
+        for (int i = 0; i < size; i++) {
+            position += reader.readVarInt();
+            offset += reader.readVarInt();
+            positions[i] = position;
+            offsets[i] = offset;
+        }
+        return new TermPositions(positions, offsets, size);
+    }
+
+
+    private static int writeVarInt(byte[] bytes, int idx, int value) {
+        while ((value & ~0x7F) != 0) {
+            bytes[idx++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        bytes[idx++] = (byte) value;
+        return idx;
+    }
+
+
+    static final class VarIntReader {
+
+        private byte[] bytes;
+        private int idx;
+
+        void reset(byte[] bytes) {
+            this.bytes = bytes;
+            this.idx = 0;
+        }
+
+        int readVarInt() {
+            int value = 0;
+            for (int shift = 0; shift < Integer.SIZE; shift += 7) {
+                if (idx == bytes.length) {
+                    throw new IllegalArgumentException("Encoded positions are truncated");
+                }
+                byte b = bytes[idx++];
+                value |= (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException("Encoded positions are damaged");
+        }
+
+    }
+
+}
@@ -0,0 +1,84 @@
+package searchengine.services.invertedindex;
+
+/**
+ * Iterates over positions of a lemma on a page, encoded with {@link PositionsCodec}, decoding them on the fly,
+ * so matching of phrases stops reading the positions as soon as the result is known. Offsets are skipped.
+ * A cursor may be reset to other positions, so matching of many pages doesn't allocate cursors.
+ */
+public final class PositionsCursor {
+
+    /**
+     * Value of {@link #position()} after the last position.
+     */
+    public static final int END = Integer.MAX_VALUE;
+
+    private final PositionsCodec.VarIntReader reader = new PositionsCodec.VarIntReader();
+    private int remaining;
+    private int position;
+
+    /**
+     * Creates the cursor, placed on the first position.
+     *
+     * @throws IllegalArgumentException if the bytes are not encoded positions.
+     */
+    public PositionsCursor(byte[] bytes) {
+        reset(bytes);
+    }
+
+    /**
+     * Creates the cursor without positions, which must be reset before use.
+     */
+    public PositionsCursor() {
+        position = END;
+    }
+
+
+    /**
+     * Places the cursor on the first of the positions.
+     *
+     * @throws IllegalArgumentException if the bytes are not encoded positions.
+     */
+    public PositionsCursor reset(byte[] bytes) {
+        reader.reset(bytes);
+        remaining = bytes.length == 0 ? 0 : reader.readVarInt();
+        position = 0;
+        next();
+        return this;
+    }
+
+
+    public int position() {
+        return position;
+    }
+
+
+    /**
+     * Moves the cursor to the next position.
+     *
+     * @return the next position or {@link #END}.
+     */
+    public int next() {
+        if (remaining == 0) {
+            position = END;
+            return END;
+        }
+        remaining--;
+        position += reader.readVarInt();
+        reader.readVarInt(); // смещение в тексте не нужно
+        return position;
+    }
+
+
+    /**
+     * Moves the cursor to the first position, which is not less than the target.
+     *
+     * @return the found position or {@link #END}.
+     */
+    public int advanceTo(int target) {
+        while (position < target) {
+            next();
+        }
+        return position;
+    }
+
+}
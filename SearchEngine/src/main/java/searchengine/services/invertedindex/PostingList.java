@@ -0,0 +1,91 @@
+package searchengine.services.invertedindex;
+
+import java.util.Arrays;
+
+/**
+ * Posting list of a single lemma. Writers are synchronized, readers work with the immutable
+ * {@link Postings} snapshot without locking.
+ * Page IDs are generated by the DB in ascending order, so new pages are usually appended to the end of the arrays:
+ * elements before the published size are never changed in place, therefore the arrays are shared with the snapshots.
+ * Any other modification copies the arrays.
+ */
+class PostingList {
+
+    private static final int INITIAL_CAPACITY = 4;
+
+    private int[] pageIds = new int[INITIAL_CAPACITY];
+    private float[] ranks = new float[INITIAL_CAPACITY];
+    private byte[][] positions = new byte[INITIAL_CAPACITY][];
+    private volatile Postings postings = Postings.EMPTY;
+
+    Postings getPostings() {
+        return postings;
+    }
+
+    /**
+     * @param pagePositions encoded positions of the lemma on the page or null.
+     */
+    synchronized void add(int pageId, float rank, byte[] pagePositions) {
+        int size = postings.size();
+        if (size > 0 && pageIds[size - 1] >= pageId) {
+            insertOrReplace(pageId, rank, pagePositions, size);
+            return;
+        }
+        if (size == pageIds.length) {
+            pageIds = Arrays.copyOf(pageIds, size * 2);
+            ranks = Arrays.copyOf(ranks, size * 2);
+            positions = Arrays.copyOf(positions, size * 2);
+        }
+        pageIds[size] = pageId;
+        ranks[size] = rank;
+        positions[size] = pagePositions;
+        postings = new Postings(pageIds, ranks, positions, size + 1);
+    }
+
+    synchronized void remove(int pageId) {
+        int size = postings.size();
+        int idx = Arrays.binarySearch(pageIds, 0, size, pageId);
+        if (idx < 0) {
+            return;
+        }
+        int[] newPageIds = new int[Math.max(pageIds.length, INITIAL_CAPACITY)];
+        float[] newRanks = new float[newPageIds.length];
+        byte[][] newPositions = new byte[newPageIds.length][];
+        System.arraycopy(pageIds, 0, newPageIds, 0, idx);
+        System.arraycopy(ranks, 0, newRanks, 0, idx);
+        System.arraycopy(positions, 0, newPositions, 0, idx);
+        System.arraycopy(pageIds, idx + 1, newPageIds, idx, size - idx - 1);
+        System.arraycopy(ranks, idx + 1, newRanks, idx, size - idx - 1);
+        System.arraycopy(positions, idx + 1, newPositions, idx, size - idx - 1);
+        pageIds = newPageIds;
+        ranks = newRanks;
+        positions = newPositions;
+        postings = new Postings(pageIds, ranks, positions, size - 1);
+    }
+
+    private void insertOrReplace(int pageId, float rank, byte[] pagePositions, int size) {
+        int idx = Arrays.binarySearch(pageIds, 0, size, pageId);
+        int[] newPageIds = Arrays.copyOf(pageIds, Math.max(pageIds.length, size + 1));
+        float[] newRanks = Arrays.copyOf(ranks, newPageIds.length);
+        byte[][] newPositions = Arrays.copyOf(positions, newPageIds.length);
+        int newSize = size;
+        if (idx >= 0) {
+            newRanks[idx] = rank;
+            newPositions[idx] = pagePositions;
+        } else {
+            idx = -idx - 1;
+            System.arraycopy(pageIds, idx, newPageIds, idx + 1, size - idx);
+            System.arraycopy(ranks, idx, newRanks, idx + 1, size - idx);
+            System.arraycopy(positions, idx, newPositions, idx + 1, size - idx);
+            newPageIds[idx] = pageId;
+            newRanks[idx] = rank;
+            newPositions[idx] = pagePositions;
+            newSize++;
+        }
+        pageIds = newPageIds;
+        ranks = newRanks;
+        positions = newPositions;
+        postings = new Postings(pageIds, ranks, positions, newSize);
+    }
+
+}
@@ -0,0 +1,55 @@
+package searchengine.services.invertedindex;
+
+import java.util.Arrays;
+
+/**
+ * Immutable view of a posting list: page IDs sorted in ascending order, the ranks of the lemma on these pages
+ * and the encoded positions of the lemma on them. Only the first 'size' elements of the arrays belong to the view.
+ */
+public final class Postings {
+
+    static final Postings EMPTY = new Postings(new int[0], new float[0], new byte[0][], 0);
+
+    private final int[] pageIds;
+    private final float[] ranks;
+    private final byte[][] positions;
+    private final int size;
+
+    Postings(int[] pageIds, float[] ranks, byte[][] positions, int size) {
+        this.pageIds = pageIds;
+        this.ranks = ranks;
+        this.positions = positions;
+        this.size = size;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int pageIdAt(int i) {
+        return pageIds[i];
+    }
+
+    public float rankAt(int i) {
+        return ranks[i];
+    }
+
+    /**
+     * @return positions of the lemma on the page, encoded with {@link PositionsCodec}, or null, if they are unknown.
+     */
+    public byte[] positionsAt(int i) {
+        return positions[i];
+    }
+
+    /**
+     * @return index of the page with param 'pageId' or (-(insertion point) - 1) if the page is absent.
+     */
+    public int indexOf(int pageId) {
+        return Arrays.binarySearch(pageIds, 0, size, pageId);
+    }
+
+}
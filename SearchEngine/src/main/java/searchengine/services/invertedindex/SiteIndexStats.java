@@ -0,0 +1,26 @@
+package searchengine.services.invertedindex;
+
+/**
+ * Statistics of the index of a site for ranking of search results, kept current at indexing.
+ *
+ * @param pagesCount  number of pages of the site.
+ * @param lemmasCount number of occurrences of lemmas on all pages of the site.
+ * @param pageLengths page IDs and numbers of occurrences of lemmas on the pages (as ranks of the postings).
+ */
+public record SiteIndexStats(int pagesCount, long lemmasCount, Postings pageLengths) {
+
+    static final SiteIndexStats EMPTY = new SiteIndexStats(0, 0, Postings.EMPTY);
+
+    public float averagePageLength() {
+        return pageLengths.isEmpty() ? 0 : (float) lemmasCount / pageLengths.size();
+    }
+
+    /**
+     * @return number of occurrences of lemmas on the page or the average page length, if the page is unknown.
+     */
+    public float pageLength(int pageId) {
+        int idx = pageLengths.indexOf(pageId);
+        return idx >= 0 ? pageLengths.rankAt(idx) : averagePageLength();
+    }
+
+}
@@ -0,0 +1,76 @@
+package searchengine.services.invertedindex;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Inverted index of a single site: lemma -> posting list.
+ * Lengths of pages (numbers of occurrences of lemmas on them) are kept in a separate posting list,
+ * where ranks are the lengths.
+ */
+class SiteInvertedIndex {
+
+    private final Map<String, PostingList> postingLists = new ConcurrentHashMap<>();
+    private final AtomicInteger pagesCount = new AtomicInteger();
+    private final PostingList pageLengths = new PostingList();
+    private final AtomicLong lemmasCount = new AtomicLong();
+
+    Postings getPostings(String lemma) {
+        PostingList postingList = postingLists.get(lemma);
+        return postingList == null ? Postings.EMPTY : postingList.getPostings();
+    }
+
+    int getPagesCount() {
+        return pagesCount.get();
+    }
+
+    void setPagesCount(int pagesCount) {
+        this.pagesCount.set(pagesCount);
+    }
+
+    SiteIndexStats getStats() {
+        return new SiteIndexStats(pagesCount.get(), lemmasCount.get(), pageLengths.getPostings());
+    }
+
+    /**
+     * @param length number of occurrences of lemmas on the page.
+     */
+    void addPageLength(int pageId, int length) {
+        pageLengths.add(pageId, length, null);
+        lemmasCount.addAndGet(length);
+    }
+
+    void add(String lemma, int pageId, float rank, byte[] positions) {
+        postingLists.computeIfAbsent(lemma, l -> new PostingList()).add(pageId, rank, positions);
+    }
+
+    void addPage(int pageId, Map<String, Integer> lemmasRanks, Map<String, byte[]> lemmasPositions) {
+        int length = 0;
+        for (Map.Entry<String, Integer> entry : lemmasRanks.entrySet()) {
+            add(entry.getKey(), pageId, entry.getValue(), lemmasPositions.get(entry.getKey()));
+            length += entry.getValue();
+        }
+        addPageLength(pageId, length);
+        pagesCount.incrementAndGet();
+    }
+
+    void removePage(int pageId, Collection<String> lemmas) {
+        lemmas.forEach(lemma -> {
+            PostingList postingList = postingLists.get(lemma);
+            if (postingList != null) {
+                postingList.remove(pageId);
+            }
+        });
+        Postings lengths = pageLengths.getPostings();
+        int idx = lengths.indexOf(pageId);
+        if (idx >= 0) {
+            lemmasCount.addAndGet((long) -lengths.rankAt(idx));
+            pageLengths.remove(pageId);
+            pagesCount.decrementAndGet();
+        }
+    }
+
+}
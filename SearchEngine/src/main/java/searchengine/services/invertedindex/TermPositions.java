@@ -0,0 +1,21 @@
+package searchengine.services.invertedindex;
+
+/**
+ * Occurrences of a lemma on a page in ascending order. Only the first 'size' elements of the arrays are occurrences.
+ *
+ * @param positions numbers of the words of the occurrences in the plain text of the page, counting from 0.
+ * @param offsets   indexes of the first chars of the words of the occurrences in the plain text of the page.
+ */
+public record TermPositions(int[] positions, int[] offsets, int size) {
+
+    public static final TermPositions EMPTY = new TermPositions(new int[0], new int[0], 0);
+
+    public int positionAt(int i) {
+        return positions[i];
+    }
+
+    public int offsetAt(int i) {
+        return offsets[i];
+    }
+
+}
@@ -12,4 +12,26 @@ public interface MorphologyService {
     Set<String> getUniqueLemmasFromText(String text);
     String getNormalForm(String word);
 
+    /**
+     * Passes every occurrence of a lemma in the text, except stop words, to the consumer.
+     */
+    void forEachLemmaOccurrence(String text, LemmaOccurrenceConsumer consumer);
+
+    /**
+     * @return share of lemmatization requests, served by the cache of word forms.
+     */
+    double getCacheHitRate();
+
+
+    @FunctionalInterface
+    interface LemmaOccurrenceConsumer {
+
+        /**
+         * @param position number of the word in the text, counting from 0. Stop words are counted too.
+         * @param offset   index of the first char of the word in the text.
+         */
+        void accept(String lemma, int position, int offset);
+
+    }
+
 }
@@ -1,76 +1,121 @@
 package searchengine.services.morphology;
 
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.lucene.morphology.LuceneMorphology;
 import org.apache.lucene.morphology.russian.RussianLuceneMorphology;
 import org.springframework.stereotype.Service;
+import searchengine.config.IndexingSettings;
+import searchengine.services.morphology.WordFormsCache.WordForm;
 
 import java.io.IOException;
 import java.util.*;
-import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 @Service
-@RequiredArgsConstructor
 @Slf4j
 public class MorphologyServiceImpl implements MorphologyService {
 
     private static final String[] STOP_WORDS_TYPES = {"МЕЖД", "СОЮЗ", "ПРЕДЛ", "ЧАСТ"};
-    private static final String REGEX_RUS_WORDS = "[а-я]+";
 
     private final LuceneMorphology luceneMorph = getRusMorphology();
+    private final WordFormsCache wordFormsCache;
+    private final Function<String, WordForm> lemmatizer = this::lemmatize;
+
+    public MorphologyServiceImpl(IndexingSettings indexingSettings) {
+        this.wordFormsCache = new WordFormsCache(indexingSettings.getMorphologyCacheSize());
+    }
 
     @Override
     public Map<String, Integer> getMapOfLemmasMentions(String text) {
-        List<String> lemmas = getLemmasFromText(text);
         HashMap<String, Integer> resultMap = new HashMap<>();
-        lemmas.forEach(lemma -> resultMap.put(lemma, resultMap.getOrDefault(lemma, 0) + 1));
+        forEachLemma(text, lemma -> resultMap.merge(lemma, 1, Integer::sum));
         return resultMap;
     }
 
     @Override
     public List<String> getLemmasFromText(String text) {
-        text = text.toLowerCase().replace('ё', 'е');
-        Pattern pattern = Pattern.compile(REGEX_RUS_WORDS);
-        Matcher matcher = pattern.matcher(text);
         List<String> resultList = new ArrayList<>();
-        while (matcher.find()) {
-            String currentWord = matcher.group();
-            if (currentWord.length() == 1 && !currentWord.equals("я")) {
-                continue;
-            } // т.к. лемматизатор неадекватно воспринимает некоторые одиночные буквы
-            AtomicBoolean isStopWord = new AtomicBoolean(false);
-            List<String> wordMorphInfo = luceneMorph.getMorphInfo(currentWord);
-            wordMorphInfo.forEach(wordInfo -> {
-                if (Arrays.stream(STOP_WORDS_TYPES).anyMatch(wordInfo::contains)) {
-                    isStopWord.set(true);
-                }
-            });
-            if (!isStopWord.get()) {
-                resultList.add(luceneMorph.getNormalForms(currentWord).get(0));
-//                resultList.addAll(luceneMorph.getNormalForms(currentWord));
-            }
-        }
+        forEachLemma(text, resultList::add);
         return resultList;
     }
 
     @Override
     public Set<String> getUniqueLemmasFromText(String text) {
-        List<String> lemmas = getLemmasFromText(text);
-        return new HashSet<>(lemmas);
+        Set<String> resultSet = new HashSet<>();
+        forEachLemma(text, resultSet::add);
+        return resultSet;
     }
 
     @Override
     public String getNormalForm(String word) {
-        if (word.matches(REGEX_RUS_WORDS)) {
-            return luceneMorph.getNormalForms(word).get(0);
+        if (isRussianWord(word)) {
+            return wordFormsCache.get(word, lemmatizer).normalForm();
         } else {
             return null;
         }
     }
 
+    @Override
+    public void forEachLemmaOccurrence(String text, LemmaOccurrenceConsumer consumer) {
+        int[] position = {0};
+        WordTokenizer.forEachWordWithOffset(text, (word, offset) -> {
+            WordForm wordForm = wordFormsCache.get(word, lemmatizer);
+            if (!wordForm.isStopWord()) {
+                consumer.accept(wordForm.normalForm(), position[0], offset);
+            }
+            position[0]++;
+        });
+    }
+
+    @Override
+    public double getCacheHitRate() {
+        long hitsCount = wordFormsCache.getHitsCount();
+        long requestsCount = hitsCount + wordFormsCache.getMissesCount();
+        return requestsCount == 0 ? 0 : (double) hitsCount / requestsCount;
+    }
+
+    /**
+     * Passes normal forms of the words of the text, except stop words, to the consumer.
+     */
+    private void forEachLemma(String text, Consumer<String> lemmaConsumer) {
+        WordTokenizer.forEachWord(text, word -> {
+            WordForm wordForm = wordFormsCache.get(word, lemmatizer);
+            if (!wordForm.isStopWord()) {
+                lemmaConsumer.accept(wordForm.normalForm());
+            }
+        });
+    }
+
+    /**
+     * @return true, if the word is not empty and consists of Russian letters in lower case except 'ё'.
+     */
+    private boolean isRussianWord(String word) {
+        if (word == null || word.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < word.length(); i++) {
+            char c = word.charAt(i);
+            if (c < 'а' || c > 'я') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private WordForm lemmatize(String word) {
+        boolean isStopWord = false;
+        for (String wordInfo : luceneMorph.getMorphInfo(word)) {
+            for (String stopWordType : STOP_WORDS_TYPES) {
+                if (wordInfo.contains(stopWordType)) {
+                    isStopWord = true;
+                    break;
+                }
+            }
+        }
+        return new WordForm(luceneMorph.getNormalForms(word).get(0), isStopWord);
+    }
+
     private LuceneMorphology getRusMorphology() {
         LuceneMorphology luceneMorph = null;
         try {
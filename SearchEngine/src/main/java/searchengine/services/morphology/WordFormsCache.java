@@ -0,0 +1,75 @@
+package searchengine.services.morphology;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Bounded concurrent cache of results of lemmatization: word form -> (normal form, stop-word flag).
+ * Entries are kept in two generations. New entries are put to the young generation; when it is full,
+ * it becomes the old one, and the former old generation is dropped. Entries found in the old generation
+ * are moved back to the young one, so frequent words (and word frequencies in texts are Zipfian)
+ * stay in the cache, and the cache holds not more than 'capacity' entries.
+ */
+class WordFormsCache {
+
+    private final int generationCapacity;
+
+    private volatile Map<String, WordForm> youngGeneration = new ConcurrentHashMap<>();
+    private volatile Map<String, WordForm> oldGeneration = new ConcurrentHashMap<>();
+
+    private final LongAdder hitsCount = new LongAdder();
+    private final LongAdder missesCount = new LongAdder();
+
+    WordFormsCache(int capacity) {
+        this.generationCapacity = Math.max(capacity / 2, 1);
+    }
+
+
+    WordForm get(String word, Function<String, WordForm> lemmatizer) {
+        WordForm wordForm = youngGeneration.get(word);
+        if (wordForm != null) {
+            hitsCount.increment();
+            return wordForm;
+        }
+        wordForm = oldGeneration.get(word);
+        if (wordForm != null) {
+            hitsCount.increment();
+        } else {
+            missesCount.increment();
+            wordForm = lemmatizer.apply(word);
+        }
+        put(word, wordForm);
+        return wordForm;
+    }
+
+
+    long getHitsCount() {
+        return hitsCount.sum();
+    }
+
+
+    long getMissesCount() {
+        return missesCount.sum();
+    }
+
+
+    private void put(String word, WordForm wordForm) {
+        Map<String, WordForm> young = youngGeneration;
+        young.put(word, wordForm);
+        if (young.size() >= generationCapacity) {
+            synchronized (this) {
+                if (youngGeneration == young) {
+                    oldGeneration = young;
+                    youngGeneration = new ConcurrentHashMap<>();
+                }
+            }
+        }
+    }
+
+
+    record WordForm(String normalForm, boolean isStopWord) {
+    }
+
+}
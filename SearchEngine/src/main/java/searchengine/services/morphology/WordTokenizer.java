@@ -0,0 +1,73 @@
+package searchengine.services.morphology;
+
+import java.util.function.Consumer;
+
+/**
+ * Splits a text into Russian words in one pass over its chars. Words are lower-cased and letter 'ё'
+ * is replaced with 'е' while they are copied to a reused buffer, so the only object created per word
+ * is the String passed to the consumer. Single letters, except 'я', are skipped, since the lemmatizer
+ * handles some of them inadequately.
+ */
+final class WordTokenizer {
+
+    private static final int INITIAL_BUFFER_LENGTH = 32;
+
+    private WordTokenizer() {
+    }
+
+
+    static void forEachWord(CharSequence text, Consumer<String> wordConsumer) {
+        forEachWordWithOffset(text, (word, offset) -> wordConsumer.accept(word));
+    }
+
+
+    /**
+     * Passes words of the text with their offsets (indexes of their first chars in the text) to the consumer.
+     * A word has the same length as in the text, as only the case of letters and letter 'ё' are changed.
+     */
+    static void forEachWordWithOffset(CharSequence text, WordConsumer wordConsumer) {
+        char[] buffer = new char[INITIAL_BUFFER_LENGTH];
+        int wordLength = 0;
+        int textLength = text.length();
+        for (int i = 0; i <= textLength; i++) {
+            char letter = i < textLength ? toLowerRussianLetter(text.charAt(i)) : 0;
+            if (letter != 0) {
+                if (wordLength == buffer.length) {
+                    char[] newBuffer = new char[buffer.length * 2];
+                    System.arraycopy(buffer, 0, newBuffer, 0, wordLength);
+                    buffer = newBuffer;
+                }
+                buffer[wordLength++] = letter;
+            } else if (wordLength > 0) {
+                if (wordLength > 1 || buffer[0] == 'я') {
+                    wordConsumer.accept(new String(buffer, 0, wordLength), i - wordLength);
+                }
+                wordLength = 0;
+            }
+        }
+    }
+
+
+    @FunctionalInterface
+    interface WordConsumer {
+        void accept(String word, int offset);
+    }
+
+
+    /**
+     * @return letter in lower case with 'ё' replaced by 'е', or 0 if the char is not a Russian letter.
+     */
+    static char toLowerRussianLetter(char c) {
+        if (c >= 'а' && c <= 'я') {
+            return c;
+        }
+        if (c >= 'А' && c <= 'Я') {
+            return (char) (c + ('а' - 'А'));
+        }
+        if (c == 'ё' || c == 'Ё') {
+            return 'е';
+        }
+        return 0;
+    }
+
+}
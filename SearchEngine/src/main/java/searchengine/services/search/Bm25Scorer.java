@@ -0,0 +1,58 @@
+package searchengine.services.search;
+
+import searchengine.services.invertedindex.Postings;
+import searchengine.services.invertedindex.SiteIndexStats;
+
+import java.util.List;
+
+/**
+ * Scores a page by Okapi BM25: the sum over the lemmas of IDF of the lemma multiplied by the saturated
+ * number of its occurrences on the page, normalized by the length of the page relative to the average length.
+ * IDF is calculated from the number of pages of the site and the size of the postings of the lemma,
+ * so frequent lemmas get low weights and don't need to be removed from the search.
+ */
+class Bm25Scorer implements RelevanceScorer {
+
+    private final float k1;
+    private final float b;
+
+    /**
+     * @param k1 saturation of the number of occurrences of a lemma.
+     * @param b  degree of normalization by the page length, from 0 to 1.
+     */
+    Bm25Scorer(float k1, float b) {
+        this.k1 = k1;
+        this.b = b;
+    }
+
+
+    @Override
+    public PostingsIntersection.PageScorer forSite(SiteIndexStats stats, List<Postings> postingsList) {
+        Postings[] lists = postingsList.toArray(new Postings[0]);
+        float[] idfs = new float[lists.length];
+        for (int j = 0; j < lists.length; j++) {
+            idfs[j] = idf(Math.max(stats.pagesCount(), lists[j].size()), lists[j].size());
+        }
+        float averageLength = stats.averagePageLength();
+        return (pageId, idxs) -> {
+            float lengthNorm = averageLength > 0
+                    ? k1 * (1 - b + b * stats.pageLength(pageId) / averageLength)
+                    : k1;
+            float score = 0;
+            for (int j = 0; j < lists.length; j++) {
+                float frequency = lists[j].rankAt(idxs[j]);
+                score += idfs[j] * frequency * (k1 + 1) / (frequency + lengthNorm);
+            }
+            return score;
+        };
+    }
+
+
+    /**
+     * @return IDF in the variant of Lucene, which is positive even for lemmas, found on all pages.
+     */
+    private static float idf(int pagesCount, int lemmaPagesCount) {
+        return (float) Math.log(1 + (pagesCount - lemmaPagesCount + 0.5) / (lemmaPagesCount + 0.5));
+    }
+
+}
@@ -0,0 +1,61 @@
+package searchengine.services.search;
+
+import java.util.Arrays;
+
+/**
+ * Accumulates pages found by the search and their scores in primitive arrays.
+ */
+class PagesRanksAccumulator {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private int[] pageIds = new int[INITIAL_CAPACITY];
+    private float[] ranks = new float[INITIAL_CAPACITY];
+    private int size;
+
+    void add(int pageId, float rank) {
+        if (size == pageIds.length) {
+            pageIds = Arrays.copyOf(pageIds, size * 2);
+            ranks = Arrays.copyOf(ranks, size * 2);
+        }
+        pageIds[size] = pageId;
+        ranks[size] = rank;
+        size++;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return pages sorted by relative relevance (rank divided by the max rank) in reverse order.
+     */
+    RankedPages toRankedPages() {
+        float maxRank = 0;
+        for (int i = 0; i < size; i++) {
+            maxRank = Math.max(maxRank, ranks[i]);
+        }
+        assert maxRank > 0;
+
+        // ranks are positive, so the order of their bit representations matches the order of the values
+        long[] sortKeys = new long[size];
+        for (int i = 0; i < size; i++) {
+            sortKeys[i] = ((long) Float.floatToIntBits(ranks[i]) << 32) | i;
+        }
+        Arrays.sort(sortKeys);
+
+        int[] rankedPageIds = new int[size];
+        float[] relevances = new float[size];
+        for (int i = 0; i < size; i++) {
+            int idx = (int) sortKeys[size - 1 - i];
+            rankedPageIds[i] = pageIds[idx];
+            relevances[i] = ranks[idx] / maxRank;
+        }
+        return new RankedPages(rankedPageIds, relevances);
+    }
+
+}
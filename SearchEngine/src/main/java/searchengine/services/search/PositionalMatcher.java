@@ -0,0 +1,247 @@
+package searchengine.services.search;
+
+import searchengine.services.invertedindex.PositionsCursor;
+import searchengine.services.invertedindex.Postings;
+
+import java.util.*;
+
+/**
+ * Checks phrases and NEAR constraints of a search request on pages of a site and boosts scores of pages,
+ * on which the lemmas of the request occur close to each other.
+ * Positions are read from the posting lists in encoded form and decoded by cursors only as far as needed.
+ * Pages pass in ascending order of IDs, so the posting lists are searched with galloping from the previous page.
+ * Lemmas are numbered at creation, so the constraints are checked by arrays of positions indexed by the numbers.
+ * If positions of a lemma on a page are unknown (the page is indexed before positions were saved),
+ * the constraints with this lemma are considered satisfied.
+ */
+final class PositionalMatcher {
+
+    static final float NOT_MATCHED = -1;
+    private static final int ABSENT = -1;
+
+    private final float proximityWeight;
+    private final Postings[] postings;
+    private final int[] postingsIdxs;
+    // позиции лемм на текущей странице по номерам лемм, null - позиции неизвестны
+    private final byte[][] pagePositions;
+    private final boolean[] present;
+    // номера лемм фраз и условий NEAR, ABSENT - лемма отсутствует на сайте
+    private final int[][] phraseSlots;
+    private final int[][] phraseOffsets;
+    private final int[][] nearSlots1;
+    private final int[][] nearSlots2;
+    private final long[] nearMaxDistances;
+    private final PositionsCursor[] cursors;
+
+    /**
+     * @param lemmasPostings  map where key is lemma of the request and value is its postings on the site.
+     *                        Lemmas, absent on the site, are not included in the map.
+     * @param proximityWeight max relative increase of the score of a page, on which all lemmas are adjacent.
+     */
+    PositionalMatcher(SearchQuery query, Map<String, Postings> lemmasPostings, float proximityWeight) {
+        this.proximityWeight = proximityWeight;
+        String[] lemmas = lemmasPostings.keySet().toArray(new String[0]);
+        Map<String, Integer> slots = new HashMap<>();
+        this.postings = new Postings[lemmas.length];
+        for (int i = 0; i < lemmas.length; i++) {
+            postings[i] = lemmasPostings.get(lemmas[i]);
+            slots.put(lemmas[i], i);
+        }
+        this.postingsIdxs = new int[lemmas.length];
+        this.pagePositions = new byte[lemmas.length][];
+        this.present = new boolean[lemmas.length];
+
+        List<SearchQuery.Phrase> phrases = query.getPhrases();
+        this.phraseSlots = new int[phrases.size()][];
+        this.phraseOffsets = new int[phrases.size()][];
+        int maxPhraseLength = 0;
+        for (int i = 0; i < phrases.size(); i++) {
+            phraseSlots[i] = phrases.get(i).lemmas().stream().mapToInt(lemma -> slots.getOrDefault(lemma, ABSENT))
+                    .toArray();
+            phraseOffsets[i] = phrases.get(i).offsets();
+            maxPhraseLength = Math.max(maxPhraseLength, phraseSlots[i].length);
+        }
+
+        List<SearchQuery.Near> nears = query.getNears();
+        this.nearSlots1 = new int[nears.size()][];
+        this.nearSlots2 = new int[nears.size()][];
+        this.nearMaxDistances = new long[nears.size()];
+        for (int i = 0; i < nears.size(); i++) {
+            nearSlots1[i] = nears.get(i).lemmas1().stream().mapToInt(lemma -> slots.getOrDefault(lemma, ABSENT))
+                    .toArray();
+            nearSlots2[i] = nears.get(i).lemmas2().stream().mapToInt(lemma -> slots.getOrDefault(lemma, ABSENT))
+                    .toArray();
+            nearMaxDistances[i] = nears.get(i).maxWordsBetween() + 1L;
+        }
+
+        this.cursors = new PositionsCursor[Math.max(Math.max(lemmas.length, maxPhraseLength), 2)];
+        for (int i = 0; i < cursors.length; i++) {
+            cursors[i] = new PositionsCursor();
+        }
+    }
+
+
+    /**
+     * Doesn't allocate memory: positions are kept in arrays of the matcher and decoded by its reusable cursors.
+     *
+     * @param pageId ID of the page, which is greater than IDs of pages, passed before.
+     * @param score  score of the page by occurrences of the lemmas on it.
+     * @return score of the page, increased according to the proximity of the lemmas,
+     * or {@link #NOT_MATCHED}, if the page doesn't satisfy the phrases or NEAR constraints.
+     */
+    float score(int pageId, float score) {
+        int knownCount = 0;
+        for (int i = 0; i < postings.length; i++) {
+            postingsIdxs[i] = PostingsIntersection.gallop(postings[i], pageId, postingsIdxs[i]);
+            int idx = postingsIdxs[i];
+            present[i] = idx < postings[i].size() && postings[i].pageIdAt(idx) == pageId;
+            pagePositions[i] = present[i] ? postings[i].positionsAt(idx) : null;
+            if (pagePositions[i] != null) {
+                knownCount++;
+            }
+        }
+        try {
+            for (int i = 0; i < phraseSlots.length; i++) {
+                if (!matchesPhrase(phraseSlots[i], phraseOffsets[i])) {
+                    return NOT_MATCHED;
+                }
+            }
+            for (int i = 0; i < nearSlots1.length; i++) {
+                if (!matchesNear(nearSlots1[i], nearSlots2[i], nearMaxDistances[i])) {
+                    return NOT_MATCHED;
+                }
+            }
+            if (proximityWeight > 0 && knownCount > 1) {
+                return score * (1 + proximityWeight * getProximity(knownCount));
+            }
+        } catch (IllegalArgumentException e) {
+            // позиции повреждены - страница проверяется только на наличие лемм
+            return score;
+        }
+        return score;
+    }
+
+
+    private boolean matchesPhrase(int[] slots, int[] offsets) {
+        for (int slot : slots) {
+            if (slot == ABSENT || !present[slot]) {
+                return false;
+            }
+            if (pagePositions[slot] == null) {
+                return true;
+            }
+        }
+        for (int i = 0; i < slots.length; i++) {
+            cursors[i].reset(pagePositions[slots[i]]);
+        }
+
+        int start = cursors[0].position();
+        candidates:
+        while (start != PositionsCursor.END) {
+            for (int i = 1; i < slots.length; i++) {
+                int target = start + offsets[i];
+                int position = cursors[i].advanceTo(target);
+                if (position == PositionsCursor.END) {
+                    return false;
+                }
+                if (position != target) {
+                    start = cursors[0].advanceTo(position - offsets[i]);
+                    continue candidates;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+
+    private boolean matchesNear(int[] slots1, int[] slots2, long maxDistance) {
+        for (int slot1 : slots1) {
+            for (int slot2 : slots2) {
+                if (matchesNear(slot1, slot2, maxDistance)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+
+    private boolean matchesNear(int slot1, int slot2, long maxDistance) {
+        if (slot1 == ABSENT || slot2 == ABSENT || !present[slot1] || !present[slot2]) {
+            return false;
+        }
+        byte[] bytes1 = pagePositions[slot1];
+        byte[] bytes2 = pagePositions[slot2];
+        if (bytes1 == null || bytes2 == null) {
+            return true;
+        }
+
+        if (slot1 == slot2) {
+            PositionsCursor cursor = cursors[0].reset(bytes1);
+            int previous = cursor.position();
+            for (int next = cursor.next(); next != PositionsCursor.END; next = cursor.next()) {
+                if (next - previous <= maxDistance) {
+                    return true;
+                }
+                previous = next;
+            }
+            return false;
+        }
+
+        PositionsCursor cursor1 = cursors[0].reset(bytes1);
+        PositionsCursor cursor2 = cursors[1].reset(bytes2);
+        int position1 = cursor1.position();
+        int position2 = cursor2.position();
+        while (position1 != PositionsCursor.END && position2 != PositionsCursor.END) {
+            if (Math.abs((long) position1 - position2) <= maxDistance) {
+                return true;
+            }
+            if (position1 < position2) {
+                position1 = cursor1.next();
+            } else {
+                position2 = cursor2.next();
+            }
+        }
+        return false;
+    }
+
+
+    /**
+     * @return value from 0 to 1: (number of lemmas - 1) divided by the length of the shortest fragment of the page,
+     * containing all lemmas with known positions. The shortest fragment is found by merging positions of the lemmas.
+     */
+    private float getProximity(int knownCount) {
+        int count = 0;
+        int maxPosition = 0;
+        for (byte[] bytes : pagePositions) {
+            if (bytes == null) {
+                continue;
+            }
+            PositionsCursor cursor = cursors[count++].reset(bytes);
+            if (cursor.position() == PositionsCursor.END) {
+                return 0;
+            }
+            maxPosition = Math.max(maxPosition, cursor.position());
+        }
+
+        int minSpan = Integer.MAX_VALUE;
+        while (minSpan > knownCount - 1) {
+            PositionsCursor minCursor = cursors[0];
+            for (int i = 1; i < count; i++) {
+                if (cursors[i].position() < minCursor.position()) {
+                    minCursor = cursors[i];
+                }
+            }
+            minSpan = Math.min(minSpan, maxPosition - minCursor.position());
+            int next = minCursor.next();
+            if (next == PositionsCursor.END) {
+                break;
+            }
+            maxPosition = Math.max(maxPosition, next);
+        }
+        // у слова может быть несколько лемм, тогда их позиции совпадают
+        return minSpan == 0 ? 1 : Math.min(1f, (knownCount - 1f) / minSpan);
+    }
+
+}
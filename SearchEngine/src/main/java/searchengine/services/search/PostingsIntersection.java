@@ -0,0 +1,123 @@
+package searchengine.services.search;
+
+import searchengine.services.invertedindex.Postings;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Intersection of sorted posting lists.
+ * The shortest list is taken as the source of candidate pages, the other lists are searched with galloping
+ * (exponential search from the current position followed by binary search), so the cost of the intersection
+ * depends on the length of the rarest lemma's list rather than on the lengths of the frequent ones.
+ * Whenever a list skips past the candidate, the candidate is moved forward to the found page in the same way.
+ */
+final class PostingsIntersection {
+
+    @FunctionalInterface
+    interface MatchConsumer {
+        void accept(int pageId, float score);
+    }
+
+    @FunctionalInterface
+    interface PageScorer {
+
+        /**
+         * @param idxs indexes of the page in the lists in the order of the lists passed to the intersection.
+         */
+        float score(int pageId, int[] idxs);
+
+    }
+
+    private PostingsIntersection() {
+    }
+
+
+    /**
+     * Passes every page, contained in all lists of param 'postingsList', and the sum of ranks on the page
+     * to param 'consumer' in ascending order of page IDs.
+     */
+    static void intersect(List<Postings> postingsList, MatchConsumer consumer) {
+        Postings[] lists = postingsList.toArray(new Postings[0]);
+        intersect(postingsList, (pageId, idxs) -> {
+            float ranksSum = 0;
+            for (int j = 0; j < lists.length; j++) {
+                ranksSum += lists[j].rankAt(idxs[j]);
+            }
+            return ranksSum;
+        }, consumer);
+    }
+
+
+    /**
+     * Passes every page, contained in all lists of param 'postingsList', and its score by param 'scorer'
+     * to param 'consumer' in ascending order of page IDs.
+     */
+    static void intersect(List<Postings> postingsList, PageScorer scorer, MatchConsumer consumer) {
+        if (postingsList.isEmpty()) {
+            return;
+        }
+        Postings[] lists = postingsList.toArray(new Postings[0]);
+        // номера списков по возрастанию их длины, курсоры - в исходном порядке списков
+        int[] order = IntStream.range(0, lists.length).boxed()
+                .sorted(Comparator.comparingInt(j -> lists[j].size()))
+                .mapToInt(Integer::intValue).toArray();
+        int[] cursors = new int[lists.length];
+        Postings shortest = lists[order[0]];
+
+        int i = 0;
+        candidates:
+        while (i < shortest.size()) {
+            int pageId = shortest.pageIdAt(i);
+            for (int k = 1; k < order.length; k++) {
+                int j = order[k];
+                int idx = gallop(lists[j], pageId, cursors[j]);
+                if (idx == lists[j].size()) {
+                    return;
+                }
+                cursors[j] = idx;
+                int foundPageId = lists[j].pageIdAt(idx);
+                if (foundPageId != pageId) {
+                    i = gallop(shortest, foundPageId, i + 1);
+                    continue candidates;
+                }
+            }
+            cursors[order[0]] = i;
+            consumer.accept(pageId, scorer.score(pageId, cursors));
+            i++;
+        }
+    }
+
+
+    /**
+     * @return index of the first page, which ID is not less than param 'pageId',
+     * starting from the index 'from', or size of the postings if there is no such page.
+     */
+    static int gallop(Postings postings, int pageId, int from) {
+        int size = postings.size();
+        if (from >= size || postings.pageIdAt(from) >= pageId) {
+            return from;
+        }
+        int low = from;
+        int step = 1;
+        int high = from + step;
+        while (high < size && postings.pageIdAt(high) < pageId) {
+            low = high;
+            step <<= 1;
+            high = from + step;
+        }
+        high = Math.min(high, size);
+        low++;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (postings.pageIdAt(mid) < pageId) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+}
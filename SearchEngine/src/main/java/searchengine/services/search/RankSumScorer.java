@@ -0,0 +1,53 @@
+package searchengine.services.search;
+
+import searchengine.services.invertedindex.Postings;
+import searchengine.services.invertedindex.SiteIndexStats;
+
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Scores a page by the sum of ranks (numbers of occurrences) of the lemmas on it.
+ * Frequent lemmas are ignored in the search, because they would raise the score of almost every page.
+ */
+class RankSumScorer implements RelevanceScorer {
+
+    /**
+     * If the number of site pages, on which the lemma occurs, is greater than this value,
+     * and the search request contains more than one lemma,
+     * then the lemma will be ignored in the search
+     */
+    private static final int MAX_NUM_PAGES = 10_000;
+
+    @Override
+    public PostingsIntersection.PageScorer forSite(SiteIndexStats stats, List<Postings> postingsList) {
+        delFrequentLemmasPostings(stats.pagesCount(), postingsList);
+        Postings[] lists = postingsList.toArray(new Postings[0]);
+        return (pageId, idxs) -> {
+            float ranksSum = 0;
+            for (int j = 0; j < lists.length; j++) {
+                ranksSum += lists[j].rankAt(idxs[j]);
+            }
+            return ranksSum;
+        };
+    }
+
+
+    /**
+     * Deletes all postings of lemmas found on all pages of the site or on more the site pages
+     * than specified in 'MAX_NUM_PAGES' property,
+     * but leaves at least one postings for lemma with the least occurrence.
+     */
+    private void delFrequentLemmasPostings(int pagesCount, List<Postings> postingsList) {
+        postingsList.sort(Comparator.comparingInt(Postings::size).reversed());
+        Iterator<Postings> iterator = postingsList.iterator();
+        while (postingsList.size() > 1 && iterator.hasNext()) {
+            Postings postings = iterator.next();
+            if (postings.size() == pagesCount || postings.size() > MAX_NUM_PAGES) {
+                iterator.remove();
+            }
+        }
+    }
+
+}
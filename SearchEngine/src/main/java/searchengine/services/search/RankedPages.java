@@ -0,0 +1,34 @@
+package searchengine.services.search;
+
+/**
+ * IDs of found pages and their relative relevance values, sorted by relevance in reverse order.
+ */
+class RankedPages {
+
+    static final RankedPages EMPTY = new RankedPages(new int[0], new float[0]);
+
+    private final int[] pageIds;
+    private final float[] relevances;
+
+    RankedPages(int[] pageIds, float[] relevances) {
+        this.pageIds = pageIds;
+        this.relevances = relevances;
+    }
+
+    int size() {
+        return pageIds.length;
+    }
+
+    boolean isEmpty() {
+        return pageIds.length == 0;
+    }
+
+    int pageIdAt(int i) {
+        return pageIds[i];
+    }
+
+    float relevanceAt(int i) {
+        return relevances[i];
+    }
+
+}
@@ -0,0 +1,31 @@
+package searchengine.services.search;
+
+import searchengine.config.SearchSettings;
+import searchengine.services.invertedindex.Postings;
+import searchengine.services.invertedindex.SiteIndexStats;
+
+import java.util.List;
+
+/**
+ * Ranking of pages, found by the search on a site, by occurrences of the lemmas of the request on them.
+ * The ranking is chosen by param 'ranking' in settings-file.
+ */
+interface RelevanceScorer {
+
+    /**
+     * Prepares scoring of pages of the site. The scorer may remove from param 'postingsList' postings of lemmas,
+     * which must not restrict the search, but leaves at least one postings.
+     *
+     * @return scorer of pages, found by intersection of the remaining postings in the order of the list.
+     */
+    PostingsIntersection.PageScorer forSite(SiteIndexStats stats, List<Postings> postingsList);
+
+
+    static RelevanceScorer of(SearchSettings searchSettings) {
+        return switch (searchSettings.getRanking()) {
+            case BM25 -> new Bm25Scorer(searchSettings.getBm25K1(), searchSettings.getBm25B());
+            case RANK_SUM -> new RankSumScorer();
+        };
+    }
+
+}
@@ -0,0 +1,38 @@
+package searchengine.services.search;
+
+import lombok.Getter;
+import lombok.Setter;
+import searchengine.model.SiteEntity;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * State of a single search request. A new context is created for every request,
+ * so concurrent requests don't share any mutable state.
+ */
+@Getter
+@Setter
+class SearchContext {
+
+    private final SearchQuery query;
+    private final int offset;
+    private int limit;
+    /**
+     * Sites, on which the search is performed, by their IDs
+     */
+    private final Map<Integer, SiteEntity> siteEntities = new HashMap<>();
+    private RankedPages rankedPages = RankedPages.EMPTY;
+
+    SearchContext(SearchQuery query, int offset, int limit) {
+        this.query = query;
+        this.offset = offset;
+        this.limit = limit;
+    }
+
+    Set<String> getLemmas() {
+        return query.getLemmas();
+    }
+
+}
@@ -0,0 +1,148 @@
+package searchengine.services.search;
+
+import searchengine.services.morphology.MorphologyService;
+
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Parsed search request: lemmas, which must occur on a found page, and constraints on their positions.
+ * Words in double quotes are a phrase, which must occur on the page word for word; stop words of the phrase
+ * are not searched, but any word may stand in their places. 'word1 NEAR/k word2' requires that the words occur
+ * on the page with not more than k other words between them.
+ */
+final class SearchQuery {
+
+    private static final Pattern PHRASE_PATTERN = Pattern.compile("\"([^\"]*)\"");
+    private static final Pattern NEAR_PATTERN = Pattern.compile("NEAR/(\\d+)", Pattern.CASE_INSENSITIVE);
+
+    private final Set<String> lemmas;
+    private final List<Phrase> phrases;
+    private final List<Near> nears;
+
+    /**
+     * @param lemmas  lemmas of the phrase in the order of the words.
+     * @param offsets positions of the lemmas relative to the first one, counting stop words.
+     */
+    record Phrase(List<String> lemmas, int[] offsets) {
+    }
+
+    /**
+     * The constraint is satisfied, if any lemma of the first word and any lemma of the second one are near.
+     *
+     * @param lemmas1         all lemmas of the first word.
+     * @param lemmas2         all lemmas of the second word.
+     * @param maxWordsBetween max number of other words between occurrences of the lemmas.
+     */
+    record Near(List<String> lemmas1, List<String> lemmas2, int maxWordsBetween) {
+    }
+
+    private SearchQuery(Set<String> lemmas, List<Phrase> phrases, List<Near> nears) {
+        this.lemmas = lemmas;
+        this.phrases = phrases;
+        this.nears = nears;
+    }
+
+
+    static SearchQuery parse(String query, MorphologyService morphologyService) {
+        Set<String> lemmas = morphologyService.getUniqueLemmasFromText(query);
+
+        List<Phrase> phrases = new ArrayList<>();
+        StringBuilder restOfQuery = new StringBuilder();
+        Matcher matcher = PHRASE_PATTERN.matcher(query);
+        while (matcher.find()) {
+            matcher.appendReplacement(restOfQuery, " ");
+            Phrase phrase = parsePhrase(matcher.group(1), morphologyService);
+            if (phrase != null) {
+                phrases.add(phrase);
+            }
+        }
+        matcher.appendTail(restOfQuery);
+
+        List<Near> nears = new ArrayList<>();
+        String[] tokens = restOfQuery.toString().trim().split("\\s+");
+        for (int i = 1; i < tokens.length - 1; i++) {
+            Matcher nearMatcher = NEAR_PATTERN.matcher(tokens[i]);
+            if (!nearMatcher.matches()) {
+                continue;
+            }
+            List<String> leftLemmas = morphologyService.getLemmasFromText(tokens[i - 1]);
+            List<String> rightLemmas = morphologyService.getLemmasFromText(tokens[i + 1]);
+            if (leftLemmas.isEmpty() || rightLemmas.isEmpty()) {
+                continue; // операнд - стоп-слово или не русское слово
+            }
+            int maxWordsBetween;
+            try {
+                maxWordsBetween = Integer.parseInt(nearMatcher.group(1));
+            } catch (NumberFormatException e) {
+                maxWordsBetween = Integer.MAX_VALUE - 1;
+            }
+            // у слова может быть несколько лемм, неизвестно, какая из них на странице
+            nears.add(new Near(List.copyOf(new LinkedHashSet<>(leftLemmas)),
+                    List.copyOf(new LinkedHashSet<>(rightLemmas)), maxWordsBetween));
+        }
+        return new SearchQuery(lemmas, List.copyOf(phrases), List.copyOf(nears));
+    }
+
+
+    /**
+     * @return phrase or null, if the text has less than two lemmas.
+     */
+    private static Phrase parsePhrase(String text, MorphologyService morphologyService) {
+        List<String> phraseLemmas = new ArrayList<>();
+        List<Integer> positions = new ArrayList<>();
+        morphologyService.forEachLemmaOccurrence(text, (lemma, position, offset) -> {
+            phraseLemmas.add(lemma);
+            positions.add(position);
+        });
+        if (phraseLemmas.size() < 2) {
+            return null;
+        }
+        int[] offsets = new int[positions.size()];
+        for (int i = 0; i < offsets.length; i++) {
+            offsets[i] = positions.get(i) - positions.get(0);
+        }
+        return new Phrase(List.copyOf(phraseLemmas), offsets);
+    }
+
+
+    Set<String> getLemmas() {
+        return lemmas;
+    }
+
+    List<Phrase> getPhrases() {
+        return phrases;
+    }
+
+    List<Near> getNears() {
+        return nears;
+    }
+
+    boolean hasPositionalConstraints() {
+        return !phrases.isEmpty() || !nears.isEmpty();
+    }
+
+
+    /**
+     * @return key of the results of the query in the cache: the sorted set of lemmas and the positional constraints,
+     * so requests, which differ only in the order of words outside of phrases, share the results.
+     */
+    String getCacheKey() {
+        StringBuilder keyBuilder = new StringBuilder();
+        new TreeSet<>(lemmas).forEach(lemma -> keyBuilder.append(lemma).append(' '));
+        for (Phrase phrase : phrases) {
+            keyBuilder.append("|\"");
+            for (int i = 0; i < phrase.lemmas().size(); i++) {
+                keyBuilder.append(phrase.lemmas().get(i)).append('@').append(phrase.offsets()[i]).append(' ');
+            }
+            keyBuilder.append('"');
+        }
+        for (Near near : nears) {
+            keyBuilder.append('|').append(String.join(",", near.lemmas1())).append(" NEAR/")
+                    .append(near.maxWordsBetween()).append(' ').append(String.join(",", near.lemmas2()));
+        }
+        return keyBuilder.toString();
+    }
+
+}
@@ -0,0 +1,143 @@
+package searchengine.services.search;
+
+import org.springframework.stereotype.Component;
+import searchengine.config.SearchSettings;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache of ranked search results shared by all search requests.
+ * Key of an entry is IDs of the searched sites and the key of the request (see {@link SearchQuery#getCacheKey()}).
+ * The cache is bounded by size (param 'cache-max-size' in settings-file), the least recently used entry is evicted,
+ * and by time to live of entries (param 'cache-ttl' in seconds).
+ * Every site has a generation, which is increased when indexing changes pages of the site. An entry keeps
+ * generations of its sites at the start of the search, so the entry is dropped at reading, if any of them has changed,
+ * and a result, computed while the site was changed, is not stored at all.
+ */
+@Component
+public class SearchResultCache {
+
+    private final int maxSize;
+    private final long ttlMillis;
+    private final Map<Integer, AtomicLong> siteGenerations = new ConcurrentHashMap<>();
+    private final LinkedHashMap<String, CacheEntry> entries;
+
+    /**
+     * IDs of the searched sites in ascending order and their generations at the start of the search.
+     */
+    record Stamp(int[] siteIds, long[] generations) {
+    }
+
+    public SearchResultCache(SearchSettings searchSettings) {
+        this.maxSize = searchSettings.getCacheMaxSize();
+        this.ttlMillis = searchSettings.getCacheTtl() * 1000L;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CacheEntry> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+
+    /**
+     * @return current generations of the sites, which must be taken before the search.
+     */
+    Stamp stamp(Collection<Integer> siteIds) {
+        int[] sortedSiteIds = siteIds.stream().mapToInt(Integer::intValue).sorted().toArray();
+        long[] generations = new long[sortedSiteIds.length];
+        for (int i = 0; i < sortedSiteIds.length; i++) {
+            generations[i] = getGeneration(sortedSiteIds[i]);
+        }
+        return new Stamp(sortedSiteIds, generations);
+    }
+
+
+    RankedPages get(Stamp stamp, SearchQuery query) {
+        if (maxSize <= 0) {
+            return null;
+        }
+        String key = makeKey(stamp, query);
+        synchronized (entries) {
+            CacheEntry entry = entries.get(key);
+            if (entry == null) {
+                return null;
+            }
+            if (entry.isExpired() || !isCurrent(entry.stamp)) {
+                entries.remove(key);
+                return null;
+            }
+            return entry.rankedPages;
+        }
+    }
+
+
+    /**
+     * Stores the result, if pages of the sites have not been changed since the stamp was taken.
+     */
+    void put(Stamp stamp, SearchQuery query, RankedPages rankedPages) {
+        if (maxSize <= 0 || !isCurrent(stamp)) {
+            return;
+        }
+        String key = makeKey(stamp, query);
+        synchronized (entries) {
+            entries.put(key, new CacheEntry(stamp, rankedPages));
+        }
+    }
+
+
+    /**
+     * Makes all entries with results for the site outdated. The entries are removed at reading or by eviction.
+     */
+    public void invalidateSite(int siteId) {
+        siteGenerations.computeIfAbsent(siteId, id -> new AtomicLong()).incrementAndGet();
+    }
+
+
+    private long getGeneration(int siteId) {
+        AtomicLong generation = siteGenerations.get(siteId);
+        return generation == null ? 0 : generation.get();
+    }
+
+
+    private boolean isCurrent(Stamp stamp) {
+        for (int i = 0; i < stamp.siteIds().length; i++) {
+            if (getGeneration(stamp.siteIds()[i]) != stamp.generations()[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    private String makeKey(Stamp stamp, SearchQuery query) {
+        StringBuilder keyBuilder = new StringBuilder();
+        for (int siteId : stamp.siteIds()) {
+            keyBuilder.append(siteId).append(',');
+        }
+        keyBuilder.append(':');
+        keyBuilder.append(query.getCacheKey());
+        return keyBuilder.toString();
+    }
+
+
+    private class CacheEntry {
+
+        private final Stamp stamp;
+        private final RankedPages rankedPages;
+        private final long createdAt = System.currentTimeMillis();
+
+        private CacheEntry(Stamp stamp, RankedPages rankedPages) {
+            this.stamp = stamp;
+            this.rankedPages = rankedPages;
+        }
+
+        private boolean isExpired() {
+            return System.currentTimeMillis() - createdAt > ttlMillis;
+        }
+
+    }
+
+}
@@ -6,9 +6,12 @@ import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
 import org.jsoup.select.Elements;
 import searchengine.services.ResultMessage;
+import searchengine.services.invertedindex.TermPositions;
 import searchengine.services.morphology.MorphologyService;
 
+import java.util.Arrays;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.regex.Matcher;
@@ -25,7 +28,14 @@ public class TitleAndSnippet {
 
 
     String getPageTitle(Document htmlDoc, Set<String> lemmas) {
-        String title = htmlDoc.head().tagName("title").text();
+        return getPageTitle(htmlDoc.head().tagName("title").text(), lemmas);
+    }
+
+
+    /**
+     * @param title title of the page, saved at indexing.
+     */
+    String getPageTitle(String title, Set<String> lemmas) {
         if (title.isEmpty()) {
             title = ResultMessage.NO_TITLE.toString();
         } else {
@@ -55,12 +65,181 @@ public class TitleAndSnippet {
     }
 
 
+    /**
+     * @param text plain text of the page, saved at indexing, where text of every block element is on a separate line.
+     * @return snippet or null, if the text has no search words.
+     */
+    String getSnippetForText(String text, Set<String> lemmas) {
+        return getSnippetForTexts(text.lines().toList(), lemmas);
+    }
+
+
+    /**
+     * Builds the snippet around the stored occurrences of the search lemmas without lemmatization of the text:
+     * the snippet covers the shortest part of the text with occurrences of the most different lemmas,
+     * which fits in 'MAX_SNIPPET_LENGTH' chars, and is extended with the words before and after it.
+     *
+     * @param text            plain text of the page, saved at indexing.
+     * @param lemmasPositions occurrences of the search lemmas in the text, one element per lemma.
+     * @return snippet or null, if there are no occurrences or they do not match the text.
+     */
+    String getSnippetForPositions(String text, List<TermPositions> lemmasPositions) {
+        int occurrencesCount = 0;
+        for (TermPositions positions : lemmasPositions) {
+            occurrencesCount += positions.size();
+        }
+        if (occurrencesCount == 0) {
+            return null;
+        }
+        // вхождения всех лемм, упорядоченные по смещению: смещение в старших битах, номер леммы в младших
+        long[] occurrences = new long[occurrencesCount];
+        int k = 0;
+        for (int lemmaIdx = 0; lemmaIdx < lemmasPositions.size(); lemmaIdx++) {
+            TermPositions positions = lemmasPositions.get(lemmaIdx);
+            for (int i = 0; i < positions.size(); i++) {
+                if (positions.offsetAt(i) >= text.length()) {
+                    return null;
+                }
+                occurrences[k++] = (long) positions.offsetAt(i) << Integer.SIZE | lemmaIdx;
+            }
+        }
+        Arrays.sort(occurrences);
+
+        int[] windowCounts = new int[lemmasPositions.size()];
+        int windowLemmasCount = 0;
+        int bestLemmasCount = 0;
+        int bestFirst = 0;
+        int bestLast = 0;
+        int first = 0;
+        for (int last = 0; last < occurrencesCount; last++) {
+            if (windowCounts[(int) occurrences[last]]++ == 0) {
+                windowLemmasCount++;
+            }
+            while (offsetOf(occurrences[last]) - offsetOf(occurrences[first]) > MAX_SNIPPET_LENGTH) {
+                if (--windowCounts[(int) occurrences[first++]] == 0) {
+                    windowLemmasCount--;
+                }
+            }
+            // повторные вхождения в начале окна не добавляют лемм, поэтому окно сужается до самого короткого
+            while (windowCounts[(int) occurrences[first]] > 1) {
+                windowCounts[(int) occurrences[first++]]--;
+            }
+            if (windowLemmasCount > bestLemmasCount || (windowLemmasCount == bestLemmasCount &&
+                    offsetOf(occurrences[last]) - offsetOf(occurrences[first]) <
+                            offsetOf(occurrences[bestLast]) - offsetOf(occurrences[bestFirst]))) {
+                bestLemmasCount = windowLemmasCount;
+                bestFirst = first;
+                bestLast = last;
+            }
+        }
+
+        int start = offsetOf(occurrences[bestFirst]);
+        int end = getWordEnd(text, offsetOf(occurrences[bestLast]));
+        for (int i = 0; i < WORDS_AMOUNT_BEFORE_AND_AFTER_LEMMA && end - start < MAX_SNIPPET_LENGTH; i++) {
+            start = getPreviousWordStart(text, start);
+        }
+        for (int i = 0; i < WORDS_AMOUNT_BEFORE_AND_AFTER_LEMMA && end - start < MAX_SNIPPET_LENGTH; i++) {
+            end = getNextWordEnd(text, end);
+        }
+
+        StringBuilder snippetBuilder = new StringBuilder(end - start + 32);
+        int copied = start;
+        for (long occurrence : occurrences) {
+            int offset = offsetOf(occurrence);
+            if (offset < copied) {
+                continue;
+            }
+            if (offset >= end) {
+                break;
+            }
+            int wordEnd = getWordEnd(text, offset);
+            snippetBuilder.append(text, copied, offset).append("<b>").append(text, offset, wordEnd).append("</b>");
+            copied = wordEnd;
+        }
+        snippetBuilder.append(text, copied, end);
+        String snippet = snippetBuilder.toString().replace('\n', ' ');
+        if (!(snippet.endsWith(".") || snippet.endsWith("!") || snippet.endsWith("?"))) {
+            snippet = snippet.concat("...");
+        }
+        return snippet;
+    }
+
+
+    private static int offsetOf(long occurrence) {
+        return (int) (occurrence >>> Integer.SIZE);
+    }
+
+
+    private static boolean isRussianLetter(char c) {
+        return (c >= 'А' && c <= 'я') || c == 'ё' || c == 'Ё';
+    }
+
+
+    private static int getWordEnd(String text, int offset) {
+        int end = offset;
+        while (end < text.length() && isRussianLetter(text.charAt(end))) {
+            end++;
+        }
+        return end;
+    }
+
+
+    /**
+     * @return start of the word before param 'start' in the same line or 'start', if there is no such word.
+     */
+    private static int getPreviousWordStart(String text, int start) {
+        int i = start;
+        while (i > 0 && text.charAt(i - 1) == ' ') {
+            i--;
+        }
+        if (i == 0 || text.charAt(i - 1) == '\n') {
+            return start;
+        }
+        while (i > 0 && text.charAt(i - 1) != ' ' && text.charAt(i - 1) != '\n') {
+            i--;
+        }
+        return i;
+    }
+
+
+    /**
+     * @return end of the word after param 'end' in the same line or 'end', if there is no such word.
+     */
+    private static int getNextWordEnd(String text, int end) {
+        int i = end;
+        while (i < text.length() && text.charAt(i) != ' ' && text.charAt(i) != '\n') {
+            i++; // конец текущего слова, если оно не закончилось на букве (например, знак препинания)
+        }
+        if (i > end) {
+            return i;
+        }
+        while (i < text.length() && text.charAt(i) == ' ') {
+            i++;
+        }
+        if (i == text.length() || text.charAt(i) == '\n') {
+            return end;
+        }
+        while (i < text.length() && text.charAt(i) != ' ' && text.charAt(i) != '\n') {
+            i++;
+        }
+        return i;
+    }
+
+
     private String getSnippetForElement(Element htmlBody, Set<String> lemmas) {
         Elements htmlElements = htmlBody.getAllElements();
+        return getSnippetForTexts(htmlElements.eachText(), lemmas);
+    }
+
+
+    /**
+     * @return snippet of the text with the most different search words or null, if the texts have no search words.
+     */
+    private String getSnippetForTexts(Iterable<String> texts, Set<String> lemmas) {
         TreeMap<Integer, String> snippets = new TreeMap<>();
 
-        htmlElements.forEach(element -> {
-            String[] words = highlightSearchWordsArray(element.text(), lemmas);
+        texts.forEach(text -> {
+            String[] words = highlightSearchWordsArray(text, lemmas);
 
             TreeMap<String, Set<String>> elementSnippet = getSnippetWithFoundLemmas(words);
             if (elementSnippet != null) {
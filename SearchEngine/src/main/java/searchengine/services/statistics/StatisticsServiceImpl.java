@@ -40,14 +40,15 @@ public class StatisticsServiceImpl implements StatisticsService {
     }
 
     private StatisticsData getStatisticsData() {
+        List<DetailedStatisticsItem> detailed = getDetailedStatisticsItems();
+
+        // считаются только активные поколения сайтов, без строящихся при переиндексации и ожидающих удаления
         TotalStatistics total = new TotalStatistics();
-        total.setSites(siteService.getCount());
-        total.setPages(pageService.getCount());
-        total.setLemmas(lemmaService.getCount());
+        total.setSites(detailed.size());
+        total.setPages(detailed.stream().mapToInt(DetailedStatisticsItem::getPages).sum());
+        total.setLemmas(detailed.stream().mapToInt(DetailedStatisticsItem::getLemmas).sum());
         total.setIndexing(ApiController.isIndexingIsRunning());
 
-        List<DetailedStatisticsItem> detailed = getDetailedStatisticsItems();
-
         StatisticsData data = new StatisticsData();
         data.setTotal(total);
         data.setDetailed(detailed);
@@ -56,7 +57,7 @@ public class StatisticsServiceImpl implements StatisticsService {
 
     private List<DetailedStatisticsItem> getDetailedStatisticsItems() {
         List<DetailedStatisticsItem> detailed = new ArrayList<>();
-        List<SiteEntity> sitesList = siteService.getAll();
+        List<SiteEntity> sitesList = siteService.getAllActive();
 
         sitesList.forEach(siteEntity -> {
             DetailedStatisticsItem item = new DetailedStatisticsItem();